@@ -0,0 +1,19 @@
+package de.n8t.filetree;
+
+/**
+ * Cancels the traversals it is handed to (see {@link Directions#cancelWith(CancellationToken)})
+ * from any thread. A cancelled traversal ends before its next directory read and closes all
+ * directories it holds open; a {@link Travel} tells which files were left out.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,42 @@
+package de.n8t.filetree;
+
+import java.nio.file.Path;
+
+/**
+ * An occurrence of one of the patterns of a {@link ContentSearch} in a file.
+ */
+public class ContentMatch {
+
+    private final Path file;
+    private final long offset;
+    private final int pattern;
+
+    ContentMatch(Path file, long offset, int pattern) {
+        this.file = file;
+        this.offset = offset;
+        this.pattern = pattern;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Returns the offset of the first byte of the match within the file.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the index of the matching pattern, in the order the patterns were given.
+     */
+    public int pattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return file + "@" + offset + "#" + pattern;
+    }
+}
@@ -0,0 +1,128 @@
+package de.n8t.filetree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a search for byte patterns in the content of the regular files of a file tree,
+ * see {@link FileTree#search(Directions, ContentSearch)}.
+ *
+ * <pre>{@code
+ *     ContentSearch search = new ContentSearch("BEGIN RSA PRIVATE KEY", "AKIA")
+ *             .workers(8)
+ *             .maxFileSize(64 * 1024 * 1024);
+ * }</pre>
+ */
+public class ContentSearch {
+
+    private final MultiPatternMatcher matcher;
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int bufferSize = 64 * 1024;
+    private long mapThreshold = 1024 * 1024;
+    private long maxFileSize = Long.MAX_VALUE;
+    private boolean skipBinaryFiles = true;
+
+    /**
+     * Searches for the given patterns, encoded as UTF-8.
+     *
+     * @throws  IllegalArgumentException
+     *          if there are no patterns or a pattern is empty
+     */
+    public ContentSearch(String... patterns) {
+        this(encode(patterns));
+    }
+
+    /**
+     * Searches for the given byte patterns.
+     *
+     * @throws  IllegalArgumentException
+     *          if there are no patterns or a pattern is empty
+     */
+    public ContentSearch(byte[]... patterns) {
+        List<byte[]> copies = new ArrayList<>();
+        for (byte[] pattern : patterns) {
+            copies.add(pattern.clone());
+        }
+        this.matcher = new MultiPatternMatcher(copies);
+    }
+
+    private static byte[][] encode(String[] patterns) {
+        byte[][] result = new byte[patterns.length][];
+        for (int i = 0; i < patterns.length; i++) {
+            result[i] = patterns[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    // Modifiers
+
+    /**
+     * Sets the number of threads scanning files, the number of available processors by default.
+     */
+    public ContentSearch workers(int workers) {
+        if (workers < 1) throw new IllegalArgumentException("'workers' is not positive");
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Sets the size of the direct buffers small files are read through, 64 KiB by default.
+     */
+    public ContentSearch bufferSize(int bufferSize) {
+        if (bufferSize < 1) throw new IllegalArgumentException("'bufferSize' is not positive");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the size above which files are memory-mapped instead of read, 1 MiB by default.
+     */
+    public ContentSearch mapThreshold(long mapThreshold) {
+        if (mapThreshold < 0) throw new IllegalArgumentException("'mapThreshold' is negative");
+        this.mapThreshold = mapThreshold;
+        return this;
+    }
+
+    /**
+     * Skips files larger than the given size, without opening them.
+     */
+    public ContentSearch maxFileSize(long maxFileSize) {
+        if (maxFileSize < 0) throw new IllegalArgumentException("'maxFileSize' is negative");
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    /**
+     * Sets whether files with a NUL byte near their beginning are skipped, {@code true} by default.
+     */
+    public ContentSearch skipBinaryFiles(boolean skipBinaryFiles) {
+        this.skipBinaryFiles = skipBinaryFiles;
+        return this;
+    }
+
+    MultiPatternMatcher matcher() {
+        return matcher;
+    }
+
+    public int workers() {
+        return workers;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    public long mapThreshold() {
+        return mapThreshold;
+    }
+
+    public long maxFileSize() {
+        return maxFileSize;
+    }
+
+    public boolean skipBinaryFiles() {
+        return skipBinaryFiles;
+    }
+}
@@ -0,0 +1,189 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Runs a {@link ContentSearch} over the regular files of a traversal.
+ *
+ * The traversal runs on the producer thread of a {@link PrefetchingIterator} and hands each
+ * regular file to a pool of workers, at most two per worker ahead. Files above the map
+ * threshold are scanned through memory-mapped windows, smaller ones through direct buffers
+ * taken from a pool with one buffer per worker. The size cap is checked against the attributes
+ * read during the traversal, so oversized files are never opened.
+ *
+ * Entries of archives are scanned on the producer thread itself, before the traversal moves
+ * on and closes the archive's file system, and always through buffers, as they cannot be mapped.
+ */
+class ContentSearcher implements PrefetchingIterator.Producer<ContentMatch> {
+
+    /**
+     * The number of leading bytes checked for a NUL byte to recognise binary files.
+     */
+    private static final int BINARY_PROBE = 8000;
+
+    /**
+     * The size of the windows large files are mapped in.
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private final Directions directions;
+    private final ContentSearch search;
+    private final Stream<FileTreeEntry> entries;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private volatile Exception failure;
+
+    ContentSearcher(Directions directions, ContentSearch search, Stream<FileTreeEntry> entries) {
+        this.directions = directions;
+        this.search = search;
+        this.entries = entries;
+        this.buffers = new ArrayBlockingQueue<>(search.workers());
+    }
+
+    @Override
+    public void produce(PrefetchingIterator.Sink<ContentMatch> sink) throws Exception {
+        int workers = search.workers();
+        int slots = 2 * workers;
+        Semaphore inFlight = new Semaphore(slots);
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "filetree-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Iterator<FileTreeEntry> iterator = entries.iterator();
+            while (!sink.cancelled() && failure == null && iterator.hasNext()) {
+                FileTreeEntry entry = iterator.next();
+                BasicFileAttributes attrs = entry.attributes();
+                if (attrs == null || !attrs.isRegularFile() || attrs.size() == 0
+                        || attrs.size() > search.maxFileSize())
+                    continue;
+
+                // entries of archives are scanned while their file system is still open
+                if (entry.path().getFileSystem() != FileSystems.getDefault()) {
+                    try {
+                        scan(entry.path(), sink);
+                    } catch (IOException | RuntimeException e) {
+                        failed(entry.path(), e);
+                    }
+                    continue;
+                }
+
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        scan(entry.path(), sink);
+                    } catch (IOException | RuntimeException e) {
+                        failed(entry.path(), e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(slots);    // wait for the scans in flight
+        } finally {
+            pool.shutdownNow();
+            entries.close();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void failed(Path file, Exception e) {
+        if (directions.onExceptionReport())
+            System.err.println(e.getClass().getSimpleName().replaceAll("Exception", "") + ": " + file);
+        if (directions.onExceptionFailFast() && failure == null)
+            failure = e;
+    }
+
+    /**
+     * Scans a single file, handing its matches to the sink.
+     */
+    private void scan(Path file, PrefetchingIterator.Sink<ContentMatch> sink)
+            throws IOException
+    {
+        MultiPatternMatcher matcher = search.matcher();
+        MultiPatternMatcher.Listener listener = (pattern, offset) -> sink.offer(new ContentMatch(file, offset, pattern));
+
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int state = MultiPatternMatcher.INITIAL_STATE;
+            long position = 0;
+
+            // only channels of the default file system can be mapped
+            if (size > search.mapThreshold() && channel instanceof FileChannel) {
+                FileChannel fileChannel = (FileChannel) channel;
+                while (position < size && state != MultiPatternMatcher.STOPPED) {
+                    long length = Math.min(MAP_WINDOW, size - position);
+                    MappedByteBuffer window = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    if (position == 0 && search.skipBinaryFiles() && isBinary(window))
+                        return;
+                    state = matcher.scan(window, state, position, listener);
+                    position += length;
+                }
+                return;
+            }
+
+            ByteBuffer buffer = takeBuffer();
+            try {
+                while (state != MultiPatternMatcher.STOPPED && fill(channel, buffer)) {
+                    if (position == 0 && search.skipBinaryFiles() && isBinary(buffer))
+                        return;
+                    state = matcher.scan(buffer, state, position, listener);
+                    position += buffer.remaining();
+                }
+            } finally {
+                buffers.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating it on first use. Besides the workers, the
+     * producer thread scans the entries of archives, so one more buffer than there are workers
+     * may be in use at once; the pool keeps one per worker and lets the extra one go.
+     */
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return (buffer != null) ? buffer : ByteBuffer.allocateDirect(search.bufferSize());
+    }
+
+    /**
+     * Reads the next chunk into the (cleared) buffer until it is full or the file ends, and
+     * flips it. Returns {@code false} if the file has no more bytes.
+     */
+    private static boolean fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                break;
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    private static boolean isBinary(ByteBuffer buffer) {
+        int end = buffer.position() + Math.min(BINARY_PROBE, buffer.remaining());
+        for (int i = buffer.position(); i < end; i++) {
+            if (buffer.get(i) == 0)
+                return true;
+        }
+        return false;
+    }
+}
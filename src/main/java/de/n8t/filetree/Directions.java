@@ -1,12 +1,28 @@
 package de.n8t.filetree;
 
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class Directions {
 
+    /**
+     * The attribute views whose attributes include the basic ones.
+     */
+    private static final Set<String> BASIC_VIEWS = new HashSet<>(Arrays.asList("basic", "posix", "unix", "dos"));
+
     private Path start;
 
     private int maxDepth = Integer.MAX_VALUE;
+    private int maxOpenDirectories = Integer.MAX_VALUE;
 
     private final LinkOption[] linkOptions;
     private boolean followLinks = false;
@@ -18,6 +34,22 @@ public class Directions {
     private boolean recurse = true;
 
     private DirectoryStream.Filter<? super Path> pathFilter;
+    private DirectoryListingCache listingCache;
+
+    private Class<? extends BasicFileAttributes> attributesType = BasicFileAttributes.class;
+    private String attributesNames;
+
+    private String[] archiveExtensions;
+    private Executor archiveExecutor;
+
+    private long timeLimitNanos = Long.MAX_VALUE;
+    private CancellationToken cancellation;
+
+    // set if the starting directory or archive was partly travelled by a traversal that ended early
+    private int resumeSkip = -1;
+    private FileTime resumeModified;
+    private String resumeEntryInArchive;
+    private List<Path> resumeDrained;
 
     public Directions(Path start, TraversalOption... options) {
         this(start, Integer.MAX_VALUE, options);
@@ -42,6 +74,97 @@ public class Directions {
         setDefaultPathFilter();
     }
 
+    /**
+     * Copies the given directions, starting at another file with another maximum depth.
+     */
+    private Directions(Directions other, Path start, int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("'maxDepth' is negative");
+        this.start = start;
+        this.maxDepth = maxDepth;
+        this.maxOpenDirectories = other.maxOpenDirectories;
+        this.linkOptions = other.linkOptions;
+        this.followLinks = other.followLinks;
+        this.walkDirectoriesOnly = other.walkDirectoriesOnly;
+        this.noLinkEntries = other.noLinkEntries;
+        this.noExoticEntries = other.noExoticEntries;
+        this.onExceptionFailFast = other.onExceptionFailFast;
+        this.onExceptionReport = other.onExceptionReport;
+        this.recurse = other.recurse;
+        this.pathFilter = other.pathFilter;
+        this.listingCache = other.listingCache;
+        this.attributesType = other.attributesType;
+        this.attributesNames = other.attributesNames;
+        this.archiveExtensions = other.archiveExtensions;
+        this.archiveExecutor = other.archiveExecutor;
+        this.timeLimitNanos = other.timeLimitNanos;
+        this.cancellation = other.cancellation;
+    }
+
+    /**
+     * Returns a copy of these directions, starting at {@code start} and travelling at most
+     * {@code maxDepth} levels below it.
+     */
+    Directions relocate(Path start, int maxDepth) {
+        return new Directions(this, start, maxDepth);
+    }
+
+    /**
+     * Returns a copy of these directions without a time limit or cancellation token, for
+     * traversals that are ended by a budget of their own.
+     */
+    Directions withoutTermination() {
+        Directions copy = new Directions(this, start, maxDepth);
+        copy.timeLimitNanos = Long.MAX_VALUE;
+        copy.cancellation = null;
+        return copy;
+    }
+
+    /**
+     * Returns a copy of these directions that travels archives as plain files.
+     */
+    Directions withoutArchives() {
+        Directions copy = new Directions(this, start, maxDepth);
+        copy.archiveExtensions = null;
+        copy.archiveExecutor = null;
+        return copy;
+    }
+
+    /**
+     * Resumes the traversal of the starting directory or archive, or of the directory
+     * {@code entryInArchive} inside the starting archive, which a traversal that ended early
+     * has delivered after reading its first {@code skip} entries, or the first {@code skip}
+     * of its {@code drained} entries, if that traversal had read them into a buffer. These are
+     * not delivered again, unless the directory or archive has been modified since, when all
+     * its entries are.
+     */
+    Directions resume(int skip, FileTime lastModified, String entryInArchive, List<Path> drained) {
+        this.resumeSkip = skip;
+        this.resumeModified = lastModified;
+        this.resumeEntryInArchive = entryInArchive;
+        this.resumeDrained = drained;
+        return this;
+    }
+
+    boolean resuming() {
+        return resumeSkip >= 0;
+    }
+
+    int resumeSkip() {
+        return resumeSkip;
+    }
+
+    FileTime resumeModified() {
+        return resumeModified;
+    }
+
+    String resumeEntryInArchive() {
+        return resumeEntryInArchive;
+    }
+
+    List<Path> resumeDrained() {
+        return resumeDrained;
+    }
+
     private Boolean[] parseOptions(TraversalOption[] options) {
         Boolean[] result = new Boolean[7];
         for (TraversalOption option: options) {
@@ -82,13 +205,143 @@ public class Directions {
         pathFilter = p -> {
             if (pathFilteredByDefault(p)) return false;
             for(String filterPath: prohibitedSubDirs) {
-                if ( p.startsWith( Paths.get(filterPath)) )       return false;
+                Path blocked = Paths.get(filterPath);
+                // entries of archives live in file systems of their own
+                if ( p.getFileSystem() != blocked.getFileSystem() ) continue;
+                if ( p.startsWith(blocked) )                        return false;
             }
             return true;
         };
         return this;
     }
 
+    // Modifier for Listing
+
+    /**
+     * Limits the number of directory handles a traversal keeps open at once, which is one per
+     * level of the tree by default. Archives opened by {@link #descendIntoArchives(String...)}
+     * count toward the limit as well. Beyond the limit, the remaining entries of the least recently
+     * opened directory are read into memory and its handle is closed, so deep trees are travelled
+     * completely with few file descriptors. Only the handles are bounded, not the memory: the
+     * entries read from drained directories are held until they are travelled, which for wide
+     * directories along the current path can be a lot of them.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code maxOpenDirectories} is not positive
+     */
+    public Directions maxOpenDirectories(int maxOpenDirectories) {
+        if (maxOpenDirectories < 1) throw new IllegalArgumentException("'maxOpenDirectories' is not positive");
+        this.maxOpenDirectories = maxOpenDirectories;
+        return this;
+    }
+
+    public Directions useListingCache(DirectoryListingCache cache) {
+        this.listingCache = cache;
+        return this;
+    }
+
+    // Modifier for Attributes
+
+    /**
+     * Reads the attributes of every entry as the given {@code BasicFileAttributes} subtype
+     * (e.g. {@code PosixFileAttributes.class}), in the single read the traveller does anyway.
+     * This applies to the default file system only: entries inside archives, and all entries
+     * of a traversal starting on another file system, get {@code BasicFileAttributes}, so
+     * {@link FileTreeEntry#attributes(Class)} throws a {@code ClassCastException} for them.
+     */
+    public Directions readAttributes(Class<? extends BasicFileAttributes> type) {
+        if (type == null) throw new NullPointerException("'type' is null");
+        this.attributesType = type;
+        this.attributesNames = null;
+        return this;
+    }
+
+    /**
+     * Reads the named attributes of every entry (e.g. {@code "unix:mode,ino,nlink,ctime"}
+     * or {@code "posix:*"}), in the single read the traveller does anyway. The basic
+     * attributes are always read along with them. This applies to the default file system
+     * only: entries inside archives, and all entries of a traversal starting on another file
+     * system, get just their basic attributes, and {@link FileTreeEntry#attribute(String)}
+     * returns {@code null} for them.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code attributes} does not name a view followed by a colon, or names a view
+     *          other than {@code basic}, {@code posix}, {@code unix} or {@code dos}, which
+     *          are the views that extend the basic attributes the traversal needs
+     */
+    public Directions readAttributes(String attributes) {
+        int colon = attributes.indexOf(':');
+        if (colon < 1 || colon == attributes.length() - 1)
+            throw new IllegalArgumentException("'attributes' is not of the form 'view:name,...'");
+        if (!BASIC_VIEWS.contains(attributes.substring(0, colon)))
+            throw new IllegalArgumentException("'attributes' names a view that does not extend 'basic'");
+        this.attributesType = BasicFileAttributes.class;
+        this.attributesNames = attributes;
+        return this;
+    }
+
+    // Modifier for Archives
+
+    /**
+     * Descends into archives as if they were directories, opening them on the common
+     * fork/join pool. See {@link #descendIntoArchives(Executor, String...)}.
+     */
+    public Directions descendIntoArchives(String... extensions) {
+        return descendIntoArchives(ForkJoinPool.commonPool(), extensions);
+    }
+
+    /**
+     * Descends into archives as if they were directories. Archives are recognised by their
+     * file name extension, {@code .zip}, {@code .jar}, {@code .war} and {@code .ear} if none
+     * are given. They are opened with the zip file system provider, which reads only their
+     * central directory, on the given executor, so the walk goes on while they open. Only the
+     * next few archives to descend into are opened ahead; each open archive holds a file
+     * handle, which counts toward {@link #maxOpenDirectories(int)}.
+     *
+     * The entries of an archive are paths of the archive's own file system, which is closed
+     * once the archive has been travelled. Archives inside archives are not descended into.
+     */
+    public Directions descendIntoArchives(Executor executor, String... extensions) {
+        if (executor == null) throw new NullPointerException("'executor' is null");
+        if (extensions.length == 0)
+            extensions = new String[] { ".zip", ".jar", ".war", ".ear" };
+        this.archiveExtensions = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++) {
+            archiveExtensions[i] = extensions[i].toLowerCase(Locale.ROOT);
+        }
+        this.archiveExecutor = executor;
+        return this;
+    }
+
+    // Modifier for Termination
+
+    /**
+     * Ends a traversal once it has been running for the given time, before its next directory
+     * read. Use {@link FileTree#beginTravel(Directions)} to learn whether it ended early and
+     * which files were left out.
+     *
+     * A traversal delivers at least one entry before the limit ends it. The first traversal
+     * that resumes a directory (see {@link Travel#remainder()}) reads it to the end in its own
+     * time, which takes longer than the limit for very large directories; the traversals that
+     * resume it after that take the entries read then from memory.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code timeLimit} is negative
+     */
+    public Directions timeLimit(long timeLimit, TimeUnit unit) {
+        if (timeLimit < 0) throw new IllegalArgumentException("'timeLimit' is negative");
+        this.timeLimitNanos = unit.toNanos(timeLimit);
+        return this;
+    }
+
+    /**
+     * Ends a traversal before its next directory read once the given token is cancelled.
+     */
+    public Directions cancelWith(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
     public Path start() {
         return start;
     }
@@ -97,6 +350,10 @@ public class Directions {
         return maxDepth;
     }
 
+    public int maxOpenDirectories() {
+        return maxOpenDirectories;
+    }
+
     public boolean followLinks() {
         return followLinks;
     }
@@ -122,4 +379,55 @@ public class Directions {
     public boolean recurse() {
         return recurse;
     }
+
+    public DirectoryListingCache listingCache() {
+        return listingCache;
+    }
+
+    public Class<? extends BasicFileAttributes> attributesType() {
+        return attributesType;
+    }
+
+    public String attributesNames() {
+        return attributesNames;
+    }
+
+    /**
+     * Returns the time limit of a traversal in nanoseconds, {@code Long.MAX_VALUE} if there is none.
+     */
+    public long timeLimitNanos() {
+        return timeLimitNanos;
+    }
+
+    public CancellationToken cancellation() {
+        return cancellation;
+    }
+
+    public Executor archiveExecutor() {
+        return archiveExecutor;
+    }
+
+    /**
+     * Returns {@code true} if archives are descended into and the given file is named like one.
+     */
+    boolean isArchive(Path file) {
+        if (archiveExtensions == null || file.getFileSystem() != FileSystems.getDefault())
+            return false;
+        Path name = file.getFileName();
+        if (name == null)
+            return false;
+        String lowerCaseName = name.toString().toLowerCase(Locale.ROOT);
+        for (String extension: archiveExtensions) {
+            if (lowerCaseName.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Identifies how attributes are read, so attributes read for other directions are not reused.
+     */
+    String attributesSignature() {
+        return (followLinks ? "follow " : "nofollow ")
+                + (attributesNames != null ? attributesNames : attributesType.getName());
+    }
 }
@@ -0,0 +1,178 @@
+package de.n8t.filetree;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of directory listings that can be shared by several traversals (see
+ * {@link Directions#useListingCache(DirectoryListingCache)}).
+ *
+ * Listings are keyed by the file key of their directory and hold the names of all entries,
+ * together with the attributes read for them. Before a listing is reused it is revalidated
+ * against the directory's current last modified time, so any entry created, deleted or renamed
+ * in the meantime causes a fresh listing. Changes to the content of an entry (which do not touch
+ * the directory) are not detected, so the cached attributes of regular files may be outdated.
+ *
+ * The cache is bounded by the total number of entries of all listings it holds; the least
+ * recently used listings are evicted first. Directories without a file key are never cached.
+ * All methods are thread safe.
+ */
+public class DirectoryListingCache {
+
+    /**
+     * Directories modified within this window before they are listed are not cached, since a
+     * further modification might not change their (coarse grained) last modified time.
+     */
+    static final long RACY_WINDOW_MILLIS = 2000;
+
+    /**
+     * The cached listing of one directory.
+     */
+    static class Listing {
+        private final FileTime lastModified;
+        private final String attributesSignature;
+        private final Path[] names;
+        private final BasicFileAttributes[] attributes;
+
+        Listing(FileTime lastModified, String attributesSignature, Path[] names, BasicFileAttributes[] attributes) {
+            this.lastModified = lastModified;
+            this.attributesSignature = attributesSignature;
+            this.names = names;
+            this.attributes = attributes;
+        }
+
+        FileTime lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the entry names, relative to the directory.
+         */
+        Path[] names() {
+            return names;
+        }
+
+        /**
+         * Returns the attributes of the entries, or {@code null} elements for entries whose
+         * attributes were not read (or were read with a different link option or view).
+         */
+        BasicFileAttributes[] attributes(String attributesSignature) {
+            return this.attributesSignature.equals(attributesSignature) ? attributes
+                                                                         : new BasicFileAttributes[names.length];
+        }
+
+        int size() {
+            return names.length;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Object, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private int entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache holding at most {@code maxEntries} directory entries, summed over all
+     * cached directories.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code maxEntries} is negative
+     */
+    public DirectoryListingCache(int maxEntries) {
+        if (maxEntries < 0) throw new IllegalArgumentException("'maxEntries' is negative");
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the listing of the directory with the given key, if it is cached and the directory
+     * has not been modified since. Stale listings are dropped.
+     */
+    synchronized Listing lookup(Object key, FileTime lastModified) {
+        Listing listing = listings.get(key);
+        if (listing != null && listing.lastModified().equals(lastModified)) {
+            hits++;
+            return listing;
+        }
+        if (listing != null) {
+            listings.remove(key);
+            entries -= listing.size();
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the listing of the directory with the given key, evicting the least recently used
+     * listings as needed. Listings larger than the whole cache are not stored.
+     */
+    synchronized void store(Object key, Listing listing) {
+        if (listing.size() > maxEntries)
+            return;
+        Listing previous = listings.put(key, listing);
+        if (previous != null)
+            entries -= previous.size();
+        entries += listing.size();
+
+        Iterator<Map.Entry<Object, Listing>> eldest = listings.entrySet().iterator();
+        while (entries > maxEntries && eldest.hasNext()) {
+            entries -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to list the directory.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of listings evicted to stay within the size bound.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of cached directories.
+     */
+    public synchronized int directories() {
+        return listings.size();
+    }
+
+    /**
+     * Returns the number of cached directory entries, summed over all cached directories.
+     */
+    public synchronized int entries() {
+        return entries;
+    }
+
+    /**
+     * Drops all cached listings. The statistics are kept.
+     */
+    public synchronized void clear() {
+        listings.clear();
+        entries = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DirectoryListingCache[directories=" + listings.size() + ", entries=" + entries
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
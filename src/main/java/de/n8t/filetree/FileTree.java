@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -20,20 +21,154 @@ import java.util.stream.StreamSupport;
 
 public class FileTree {
 
+    /**
+     * The number of matches a search may find ahead of its consumer.
+     */
+    private static final int MATCH_BUFFER_SIZE = 1024;
+
     public static Stream<Path> travelOn(Directions directions)
             throws IOException
+    {
+        return travel(directions).map(entry -> entry.file());
+    }
+
+    /**
+     * Like {@link #travelOn(Directions)}, but delivers each node together with the attributes
+     * read for it while travelling, in the view selected by the directions.
+     */
+    public static Stream<FileTreeEntry> travelWithAttributes(Directions directions)
+            throws IOException
+    {
+        return travel(directions).map(entry -> new FileTreeEntry(entry.file(), entry.attributes()));
+    }
+
+    /**
+     * Starts a traversal that ends early once the time limit of the directions has passed or
+     * their cancellation token is cancelled, or when it is closed. The returned {@link Travel}
+     * tells whether the traversal was complete and which files it left out.
+     *
+     * @throws  IOException
+     *          if an I/O errors occurs opening the starting file
+     */
+    public static Travel beginTravel(Directions directions)
+            throws IOException
+    {
+        FileTreeIterator iterator = new FileTreeIterator(directions);
+        try {
+            return new Travel(directions, iterator);
+        } catch (Error|RuntimeException e) {
+            iterator.close();
+            throw e;
+        }
+    }
+
+    private static Stream<FileTreeTraveller.Event> travel(Directions directions)
+            throws IOException
     {
         FileTreeIterator iterator = new FileTreeIterator(directions);
         try {
             return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT), false)
-                    .onClose(iterator::close)
-                    .map(entry -> entry.file());
+                    .onClose(iterator::close);
         } catch (Error|RuntimeException e) {
             iterator.close();
             throw e;
         }
     }
 
+    /**
+     * Like {@link #travelOn(Directions)}, but the tree is travelled on a background thread that
+     * runs up to {@code bufferSize} entries ahead of the stream's consumer, so directory I/O
+     * overlaps with the processing of the entries already delivered.
+     *
+     * The consumer's demand bounds the prefetching: once {@code bufferSize} entries are waiting,
+     * the background thread pauses until the consumer catches up. Closing the stream stops the
+     * background thread, which then closes all directories it still holds open.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code bufferSize} is not positive
+     * @throws  IOException
+     *          if an I/O errors occurs opening the starting file
+     */
+    public static Stream<Path> travelAhead(Directions directions, int bufferSize)
+            throws IOException
+    {
+        if (bufferSize < 1) throw new IllegalArgumentException("'bufferSize' is not positive");
+        FileTreeIterator walk = new FileTreeIterator(directions);
+        PrefetchingIterator<Path> iterator;
+        try {
+            iterator = new PrefetchingIterator<>(bufferSize, sink -> {
+                try {
+                    while (!sink.cancelled() && walk.hasNext()) {
+                        if (!sink.offer(walk.next().file()))
+                            return;
+                    }
+                } finally {
+                    walk.close();
+                }
+            });
+        } catch (Error|RuntimeException e) {
+            walk.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Searches the content of the regular files travelled with the given directions for the
+     * patterns of the given search, scanning the files on a pool of worker threads while the
+     * tree is still being travelled. The matches are delivered as they are found, so matches of
+     * different files may interleave. Closing the stream stops the search.
+     *
+     * @throws  IOException
+     *          if an I/O errors occurs opening the starting file
+     */
+    public static Stream<ContentMatch> search(Directions directions, ContentSearch search)
+            throws IOException
+    {
+        Stream<FileTreeEntry> entries = travelWithAttributes(directions);
+        PrefetchingIterator<ContentMatch> iterator;
+        try {
+            iterator = new PrefetchingIterator<>(MATCH_BUFFER_SIZE, new ContentSearcher(directions, search, entries));
+        } catch (Error|RuntimeException e) {
+            entries.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Estimates the number of entries and the total size of the regular files of the tree that
+     * {@link #travelOn(Directions)} would travel, by sampling random paths through it for at most
+     * the given time. See {@link TreeEstimate} for the result. Archives are counted as regular
+     * files, as if the directions did not descend into them.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code timeBudget} is negative
+     * @throws  IOException
+     *          if an I/O errors occurs reading the starting file
+     */
+    public static TreeEstimate estimate(Directions directions, long timeBudget, TimeUnit unit)
+            throws IOException
+    {
+        return estimate(directions, timeBudget, unit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #estimate(Directions, long, TimeUnit)}, but lists at most {@code maxListings}
+     * directories.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code timeBudget} or {@code maxListings} is negative
+     * @throws  IOException
+     *          if an I/O errors occurs reading the starting file
+     */
+    public static TreeEstimate estimate(Directions directions, long timeBudget, TimeUnit unit, int maxListings)
+            throws IOException
+    {
+        return new TreeEstimator(directions, unit.toNanos(timeBudget), maxListings).estimate();
+    }
 
     public static Stream<Path> getDirFileContent(Path d){
         File[] files = d.toFile().listFiles();
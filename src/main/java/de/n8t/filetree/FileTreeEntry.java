@@ -0,0 +1,66 @@
+package de.n8t.filetree;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A node of a file tree together with the attributes read for it during the traversal, as
+ * delivered by {@link FileTree#travelWithAttributes(Directions)}.
+ *
+ * The attributes are read in the view selected with {@link Directions#readAttributes(Class)}
+ * or {@link Directions#readAttributes(String)}, basic attributes by default. They are
+ * {@code null} if they could not be read.
+ */
+public class FileTreeEntry {
+
+    private final Path path;
+    private final BasicFileAttributes attrs;
+
+    FileTreeEntry(Path path, BasicFileAttributes attrs) {
+        this.path = path;
+        this.attrs = attrs;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public BasicFileAttributes attributes() {
+        return attrs;
+    }
+
+    /**
+     * Returns the attributes as the given type, e.g. {@code PosixFileAttributes.class} when
+     * the directions read that view.
+     *
+     * @throws  ClassCastException
+     *          if the attributes were read in another view, like the basic attributes of
+     *          entries inside archives
+     */
+    public <A extends BasicFileAttributes> A attributes(Class<A> type) {
+        return type.cast(attrs);
+    }
+
+    /**
+     * Returns a single attribute read by {@link Directions#readAttributes(String)}, by its name
+     * with or without the view prefix (e.g. {@code "ino"} or {@code "unix:ino"}). Returns
+     * {@code null} if no such attribute was read.
+     */
+    public Object attribute(String name) {
+        if (!(attrs instanceof NamedFileAttributes))
+            return null;
+        NamedFileAttributes named = (NamedFileAttributes) attrs;
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            if (!name.substring(0, colon).equals(named.view()))
+                return null;
+            name = name.substring(colon + 1);
+        }
+        return named.asMap().get(name);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
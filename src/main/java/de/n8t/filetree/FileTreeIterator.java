@@ -59,6 +59,10 @@ class FileTreeIterator implements Iterator<FileTreeTraveller.Event>, Closeable {
             IOException ioe = next.ioeException();
             if (ioe != null)
                 throw ioe;
+
+            // a resumed directory or archive has been delivered by the traversal that ended early
+            if (directions.resuming() && next.type() == FileTreeTraveller.EventType.START_DIRECTORY)
+                next = null;
         } else {
             Files.newDirectoryStream(directions.start());
         }
@@ -111,6 +115,29 @@ class FileTreeIterator implements Iterator<FileTreeTraveller.Event>, Closeable {
         return result;
     }
 
+    /**
+     * Ends the traversal early, like {@link #close()}, but records the files not travelled
+     * yet, including the one fetched ahead, as the walker's frontier.
+     */
+    void stop() {
+        if (walker.isOpen()) {
+            walker.interrupt(next);
+            next = null;
+            walker.close();
+        }
+    }
+
+    /**
+     * Returns {@code true} if every file has been delivered.
+     */
+    boolean complete() {
+        return !walker.interrupted() && next == null && !walker.hasPending();
+    }
+
+    FileTreeTraveller walker() {
+        return walker;
+    }
+
     @Override
     public void close() {
         walker.close();
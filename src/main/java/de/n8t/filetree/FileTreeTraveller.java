@@ -5,10 +5,21 @@ import sun.nio.fs.BasicFileAttributesHolder;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipError;
 
 /**
  * Copied from internal java.nio.file Class:
@@ -34,25 +45,131 @@ import java.util.Iterator;
  */
 
 class FileTreeTraveller implements Closeable {
+    /**
+     * The number of archives opened in the background ahead of being descended into.
+     */
+    private static final int ARCHIVES_OPENED_AHEAD = 4;
+
+    /**
+     * The interval in which the cancellation token is checked while waiting for an archive.
+     */
+    private static final long ARCHIVE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
     private final Directions directions;
     private final ArrayDeque<DirectoryNode> stack = new ArrayDeque<>();
+    // the nodes on the stack holding an open directory handle, most recent first
+    private final ArrayDeque<DirectoryNode> openNodes = new ArrayDeque<>();
+    // the archives on the stack and the ones being opened ahead, each holding a file handle
+    private int openArchives;
+    private int archivesOpening;
+    // what a traversal that ended early has left out
+    private final List<FrontierEntry> frontier = new ArrayList<>();
+    private long deadline;
+    // whether an event to deliver has been produced, before which the time limit does not apply
+    private boolean progressed;
+    private boolean interrupted;
     private boolean closed;
 
     /**
      * The element on the walking stack corresponding to a directory node.
+     *
+     * The entries of the directory either come from an open {@code DirectoryStream} or, if
+     * the directory is unchanged since an earlier traversal, from a cached listing. Either way
+     * they come unfiltered and in the same order, so the number of entries read tells how far
+     * the directory has been travelled, and the filter is applied here. While a
+     * listing cache is in use, the names and attributes of the entries read from the stream
+     * are recorded so that the complete listing can be cached once the directory is done.
+     *
+     * The node of an archive holds the archive's file system, and the node of a directory
+     * holds the archives found in it, which are descended into after its other entries. Only
+     * the next few of them are opened ahead, see {@link #startPendingArchives}. The nodes of
+     * an archive and the directories inside it know the archive file and its last modified
+     * time, which tells whether a traversal that ended early can resume them.
+     *
+     * To bound the number of open directory handles, the stream of a node can be drained:
+     * its remaining entries are read into a buffer and the stream is closed early. A resumed
+     * directory is drained right away, and a traversal that ends early hands the buffer of a
+     * drained directory on to its remainder, so a directory is read past its first entries
+     * at most once, however often it is resumed.
      */
     private static class DirectoryNode {
         private final Path dir;
         private final Object key;
+        private final FileTime lastModified;
         private final DirectoryStream<Path> stream;
         private final Iterator<Path> iterator;
+        private final Path archiveFile;
+        private final Closeable archive;
         private boolean skipped;
+        private ArrayDeque<PendingArchive> pendingArchives;
+
+        private final DirectoryStream.Filter<? super Path> filter;
+
+        // the number of entries read so far, those still to skip, and whether all have been read
+        private int entriesRead;
+        private int toSkip;
+        private boolean listed;
+
+        // set if the entries come from a cached listing
+        private Path[] cachedNames;
+        private BasicFileAttributes[] cachedAttrs;
+        private int position;
 
-        DirectoryNode(Path dir, Object key, DirectoryStream<Path> stream) {
+        // set if the remaining entries of the stream were drained into a buffer
+        private List<Path> drained;
+        private int drainedPosition;
+        private int drainedRecordBase;
+        private IOException drainFailure;
+
+        // set if the entries are recorded for the listing cache
+        private FileTime recordedModified;
+        private List<Path> recordedNames;
+        private List<BasicFileAttributes> recordedAttrs;
+        private int lastRecorded;
+
+        DirectoryNode(Path dir, Object key, FileTime lastModified, DirectoryStream<Path> stream,
+                      DirectoryStream.Filter<? super Path> filter) {
+            this(dir, key, lastModified, stream, filter, null, null);
+        }
+
+        DirectoryNode(Path dir, Object key, FileTime lastModified, DirectoryStream<Path> stream,
+                      DirectoryStream.Filter<? super Path> filter, Path archiveFile, Closeable archive) {
             this.dir = dir;
             this.key = key;
+            this.lastModified = lastModified;
             this.stream = stream;
             this.iterator = stream.iterator();
+            this.filter = filter;
+            this.archiveFile = archiveFile;
+            this.archive = archive;
+        }
+
+        DirectoryNode(Path dir, Object key, FileTime lastModified, List<Path> drained, int position,
+                      DirectoryStream.Filter<? super Path> filter) {
+            this.dir = dir;
+            this.key = key;
+            this.lastModified = lastModified;
+            this.stream = null;
+            this.iterator = null;
+            this.archiveFile = null;
+            this.archive = null;
+            this.filter = filter;
+            this.drained = drained;
+            this.drainedPosition = position;
+        }
+
+        DirectoryNode(Path dir, Object key, DirectoryListingCache.Listing listing, String attributesSignature,
+                      DirectoryStream.Filter<? super Path> filter) {
+            this.dir = dir;
+            this.key = key;
+            this.lastModified = listing.lastModified();
+            this.stream = null;
+            this.iterator = null;
+            this.archiveFile = null;
+            this.archive = null;
+            this.filter = filter;
+            this.cachedNames = listing.names();
+            this.cachedAttrs = listing.attributes(attributesSignature);
         }
 
         Path directory() {
@@ -63,12 +180,268 @@ class FileTreeTraveller implements Closeable {
             return key;
         }
 
-        DirectoryStream<Path> stream() {
-            return stream;
+        /**
+         * Returns the last modified time of the directory, or of its archive if it is inside one.
+         */
+        FileTime lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the archive file the directory belongs to, or {@code null}.
+         */
+        Path archiveFile() {
+            return archiveFile;
+        }
+
+        /**
+         * Skips the given number of entries, without filtering them, as they have been
+         * travelled before.
+         */
+        void skipEntries(int count) {
+            toSkip = count;
+        }
+
+        /**
+         * Returns the number of entries read from the directory, whether accepted, filtered
+         * out or skipped.
+         */
+        int entriesRead() {
+            return entriesRead;
+        }
+
+        /**
+         * Returns {@code true} if all entries have been read from the directory.
+         */
+        boolean listed() {
+            return listed;
+        }
+
+        /**
+         * Records the entries of the stream, so they can be cached afterwards.
+         */
+        void record() {
+            this.recordedModified = lastModified;
+            this.recordedNames = new ArrayList<>();
+            this.recordedAttrs = new ArrayList<>();
+        }
+
+        boolean recording() {
+            return recordedNames != null;
+        }
+
+        /**
+         * Returns {@code true} if this node holds an open directory handle.
+         */
+        boolean holdsHandle() {
+            return stream != null && archive == null && drained == null
+                    && dir.getFileSystem() == FileSystems.getDefault();
+        }
+
+        /**
+         * Reads the remaining entries of the stream into a buffer, except those still to skip,
+         * and closes the stream. A failure is kept to be thrown once the buffered entries are
+         * used up.
+         */
+        void drain() {
+            List<Path> rest = new ArrayList<>();
+            try {
+                while (toSkip > 0 && iterator.hasNext()) {
+                    Path entry = iterator.next();
+                    if (recording()) {
+                        recordedNames.add(entry.getFileName());
+                        recordedAttrs.add(null);
+                    }
+                    entriesRead++;
+                    toSkip--;
+                }
+                drainedRecordBase = recording() ? recordedNames.size() : 0;
+                while (iterator.hasNext()) {
+                    Path entry = iterator.next();
+                    rest.add(entry);
+                    if (recording()) {
+                        recordedNames.add(entry.getFileName());
+                        recordedAttrs.add(null);
+                    }
+                }
+            } catch (DirectoryIteratorException x) {
+                drainFailure = x.getCause();
+            }
+            try {
+                stream.close();
+            } catch (IOException e) {
+                if (drainFailure == null) {
+                    drainFailure = e;
+                } else {
+                    drainFailure.addSuppressed(e);
+                }
+            }
+            ((ArrayList<Path>) rest).trimToSize();
+            drained = rest;
+        }
+
+        /**
+         * Returns the next accepted entry, or {@code null} if the directory has no more entries.
+         *
+         * @throws  DirectoryIteratorException
+         *          if an I/O error occurs reading the directory or applying the filter
+         */
+        Path nextEntry() {
+            while (true) {
+                Path entry;
+                if (cachedNames != null) {
+                    if (position >= cachedNames.length) {
+                        listed = true;
+                        return null;
+                    }
+                    entry = dir.resolve(cachedNames[position++]);
+                } else if (drained != null) {
+                    if (drainedPosition >= drained.size()) {
+                        IOException failure = drainFailure;
+                        drainFailure = null;
+                        if (failure != null)
+                            throw new DirectoryIteratorException(failure);
+                        listed = true;
+                        return null;
+                    }
+                    lastRecorded = drainedRecordBase + drainedPosition;
+                    entry = drained.get(drainedPosition++);
+                } else {
+                    if (!iterator.hasNext()) {
+                        listed = true;
+                        return null;
+                    }
+                    entry = iterator.next();
+                    if (recording()) {
+                        recordedNames.add(entry.getFileName());
+                        recordedAttrs.add(null);
+                        lastRecorded = recordedNames.size() - 1;
+                    }
+                }
+                entriesRead++;
+                if (toSkip > 0) {
+                    toSkip--;
+                    continue;
+                }
+                try {
+                    if (filter == null || filter.accept(entry))
+                        return entry;
+                } catch (IOException ioe) {
+                    throw new DirectoryIteratorException(ioe);
+                }
+            }
+        }
+
+        /**
+         * Returns the buffered entries of a drained directory, if it could be read to the end,
+         * or {@code null}.
+         */
+        List<Path> drainedEntries() {
+            return (drained != null && drainFailure == null) ? drained : null;
+        }
+
+        /**
+         * Returns the number of buffered entries read so far.
+         */
+        int drainedPosition() {
+            return drainedPosition;
+        }
+
+        /**
+         * Returns the cached attributes of the entry last returned by {@link #nextEntry}, if any.
+         */
+        BasicFileAttributes cachedAttributes() {
+            return (cachedNames != null) ? cachedAttrs[position - 1] : null;
+        }
+
+        /**
+         * Records the attributes of the entry last returned by {@link #nextEntry}.
+         */
+        void recordAttributes(BasicFileAttributes attrs) {
+            if (recording())
+                recordedAttrs.set(lastRecorded, attrs);
+        }
+
+        /**
+         * Returns the recorded listing.
+         */
+        DirectoryListingCache.Listing recordedListing(String attributesSignature) {
+            return new DirectoryListingCache.Listing(recordedModified, attributesSignature,
+                    recordedNames.toArray(new Path[0]),
+                    recordedAttrs.toArray(new BasicFileAttributes[0]));
         }
 
-        Iterator<Path> iterator() {
-            return iterator;
+        /**
+         * Remembers an archive of this directory, to be descended into later.
+         */
+        void addPendingArchive(PendingArchive pending) {
+            if (pendingArchives == null)
+                pendingArchives = new ArrayDeque<>();
+            pendingArchives.add(pending);
+        }
+
+        /**
+         * Returns the next archive of this directory to descend into, or {@code null}.
+         */
+        PendingArchive nextPendingArchive() {
+            return (pendingArchives != null) ? pendingArchives.poll() : null;
+        }
+
+        /**
+         * Puts back an archive taken by {@link #nextPendingArchive}, to be descended into next.
+         */
+        void putBackPendingArchive(PendingArchive pending) {
+            if (pendingArchives == null)
+                pendingArchives = new ArrayDeque<>();
+            pendingArchives.addFirst(pending);
+        }
+
+        /**
+         * Returns the first archive of this directory that is not being opened yet, or {@code null}.
+         */
+        PendingArchive firstUnstartedArchive() {
+            if (pendingArchives != null) {
+                for (PendingArchive pending : pendingArchives) {
+                    if (!pending.started())
+                        return pending;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the last archive of this directory that is being opened, or {@code null}.
+         */
+        PendingArchive lastStartedArchive() {
+            if (pendingArchives != null) {
+                for (Iterator<PendingArchive> i = pendingArchives.descendingIterator(); i.hasNext(); ) {
+                    PendingArchive pending = i.next();
+                    if (pending.started())
+                        return pending;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Closes the stream of this node, if it has one, and its archive's file system.
+         */
+        void close() throws IOException {
+            try {
+                if (stream != null)
+                    stream.close();
+            } finally {
+                if (archive != null)
+                    archive.close();
+            }
+        }
+
+        /**
+         * Returns {@code true} if this node holds the file system of an archive, which is
+         * closed along with it.
+         */
+        boolean holdsArchive() {
+            return archive != null;
         }
 
         void skip() {
@@ -80,6 +453,166 @@ class FileTreeTraveller implements Closeable {
         }
     }
 
+    /**
+     * An archive to be descended into, whose file system may be opened in the background.
+     */
+    private static class PendingArchive {
+        private final Path file;
+        private final FileTime lastModified;
+        private CompletableFuture<FileSystem> fileSystem;
+
+        PendingArchive(Path file, FileTime lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        FileTime lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Starts opening the archive on the given executor.
+         */
+        void start(Executor executor) {
+            fileSystem = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return openArchive(file);
+                } catch (IOException ioe) {
+                    throw new CompletionException(ioe);
+                }
+            }, executor);
+        }
+
+        /**
+         * Returns {@code true} if the archive is being opened.
+         */
+        boolean started() {
+            return fileSystem != null;
+        }
+
+        /**
+         * Waits at most the given time for the started archive to be opened and returns its
+         * file system, or {@code null} if it is not open yet.
+         */
+        FileSystem fileSystem(long timeoutNanos) throws IOException {
+            try {
+                return fileSystem.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while opening " + file);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)      throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error)            throw (Error) cause;
+                throw new IOException(cause);
+            }
+        }
+
+        /**
+         * Closes the file system once it is open, without waiting for it, and leaves the
+         * archive unstarted again.
+         */
+        void discard() {
+            if (fileSystem == null)
+                return;
+            fileSystem.whenComplete((fs, t) -> {
+                if (fs != null) {
+                    try {
+                        fs.close();
+                    } catch (IOException ignore) { }
+                }
+            });
+            fileSystem = null;
+        }
+    }
+
+    /**
+     * A file left out by a traversal that ended early. A directory that was partly travelled
+     * is recorded once, with the number of its entries read so far and its last modified time,
+     * to resume it with; so is an archive, whose own path has been delivered already, and a
+     * directory inside an archive, along with the archive file. A directory whose entries were
+     * drained into a buffer is recorded with the buffer and the number of entries taken from
+     * it. Any other file is left out as a whole.
+     */
+    static class FrontierEntry {
+        private final Path file;
+        private final Path archiveFile;
+        private final int depth;
+        private final int entriesRead;
+        private final FileTime lastModified;
+        private final List<Path> drained;
+
+        FrontierEntry(Path file, int depth) {
+            this(file, null, depth, -1, null, null);
+        }
+
+        FrontierEntry(Path file, Path archiveFile, int depth, int entriesRead, FileTime lastModified,
+                      List<Path> drained) {
+            this.file = file;
+            this.archiveFile = archiveFile;
+            this.depth = depth;
+            this.entriesRead = entriesRead;
+            this.lastModified = lastModified;
+            this.drained = drained;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        /**
+         * Returns the file to travel from to resume this one: the archive file for a
+         * directory inside an archive, the file itself otherwise.
+         */
+        Path start() {
+            return (archiveFile != null) ? archiveFile : file;
+        }
+
+        /**
+         * Returns the path of a directory inside an archive, or {@code null}.
+         */
+        String entryInArchive() {
+            return (archiveFile != null && !archiveFile.equals(file)) ? file.toString() : null;
+        }
+
+        /**
+         * Returns the depth of the file below the starting file.
+         */
+        int depth() {
+            return depth;
+        }
+
+        /**
+         * Returns {@code true} if the file is a directory or an archive that is resumed.
+         */
+        boolean partial() {
+            return entriesRead >= 0;
+        }
+
+        int entriesRead() {
+            return entriesRead;
+        }
+
+        FileTime lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the buffered entries of the directory, of which {@link #entriesRead} have
+         * been read, or {@code null} if the directory is read from its beginning.
+         */
+        List<Path> drained() {
+            return drained;
+        }
+    }
+
     /**
      * The event types.
      */
@@ -159,14 +692,17 @@ class FileTreeTraveller implements Closeable {
      * Returns the attributes of the given file, taking into account whether
      * the travelOn is following sym links is not. The {@code canUseCached}
      * argument determines whether this method can use cached attributes.
+     * The attributes are read in the view selected by the directions.
      */
     private BasicFileAttributes getAttributes(Path file, boolean canUseCached)
             throws IOException
     {
-        // if attributes are cached then use them if possible
+        // if attributes are cached then use them if possible (they are basic attributes only)
         if (canUseCached &&
                 (file instanceof BasicFileAttributesHolder) &&
-                (System.getSecurityManager() == null))
+                (System.getSecurityManager() == null) &&
+                directions.attributesNames() == null &&
+                directions.attributesType() == BasicFileAttributes.class)
         {
             BasicFileAttributes cached = ((BasicFileAttributesHolder)file).get();
             if (cached != null && (!directions.followLinks() || !cached.isSymbolicLink())) {
@@ -178,19 +714,34 @@ class FileTreeTraveller implements Closeable {
         // links then a link target might not exist so get attributes of link
         BasicFileAttributes attrs;
         try {
-            attrs = Files.readAttributes(file, BasicFileAttributes.class, directions.linkOptions());
+            attrs = readAttributes(file, directions.linkOptions());
         } catch (IOException ioe) {
             if (!directions.followLinks())
                 throw ioe;
 
             // attempt to get attrmptes without following links
-            attrs = Files.readAttributes(file,
-                    BasicFileAttributes.class,
-                    LinkOption.NOFOLLOW_LINKS);
+            attrs = readAttributes(file, LinkOption.NOFOLLOW_LINKS);
         }
         return attrs;
     }
 
+    /**
+     * Reads the attributes of the given file in the view selected by the
+     * directions, with a single call to the file system.
+     */
+    private BasicFileAttributes readAttributes(Path file, LinkOption... options)
+            throws IOException
+    {
+        // entries of archives only support the basic view
+        if (file.getFileSystem() != FileSystems.getDefault())
+            return Files.readAttributes(file, BasicFileAttributes.class, options);
+
+        String names = directions.attributesNames();
+        if (names != null)
+            return new NamedFileAttributes(names, Files.readAttributes(file, NamedFileAttributes.withBasic(names), options));
+        return Files.readAttributes(file, directions.attributesType(), options);
+    }
+
     /**
      * Returns true if walking into the given directory would result in a
      * file system loop/cycle.
@@ -229,13 +780,17 @@ class FileTreeTraveller implements Closeable {
      * mean that there is no event corresponding to a visit to the file.
      *
      * The {@code canUseCached} parameter determines whether cached attributes
-     * for the file can be used or not.
+     * for the file can be used or not. The {@code listed} parameter holds the
+     * attributes of the file taken from a cached directory listing, or is
+     * {@code null}. They are not used for directories, whose current last
+     * modified time is needed to revalidate their own cached listing.
      */
-    private Event visit(Path entry, boolean ignoreSecurityException, boolean canUseCached) {
+    private Event visit(Path entry, boolean ignoreSecurityException, boolean canUseCached,
+                        BasicFileAttributes listed) {
         // need the file attributes
         BasicFileAttributes attrs;
         try {
-            attrs = getAttributes(entry, canUseCached);
+            attrs = (listed != null && !listed.isDirectory()) ? listed : getAttributes(entry, canUseCached);
         } catch (IOException ioe) {
             return new Event(EventType.ENTRY, entry, ioe);
         } catch (SecurityException se) {
@@ -244,8 +799,24 @@ class FileTreeTraveller implements Closeable {
             throw se;
         }
 
-        // at maximum depth or file is not a directory
+        // file is an archive to descend into: the starting file right away, any other
+        // after the remaining entries of its directory, while it may be opened in the background
         int depth = stack.size();
+        if (depth < directions.maxDepth() && attrs.isRegularFile() && directions.isArchive(entry)) {
+            if (stack.isEmpty()) {
+                try {
+                    push(archiveNode(entry, attrs.lastModifiedTime(), openArchive(entry)));
+                } catch (IOException ioe) {
+                    return new Event(EventType.ENTRY, entry, ioe);
+                }
+                return new Event(EventType.START_DIRECTORY, entry, attrs);
+            }
+            stack.peek().addPendingArchive(new PendingArchive(entry, attrs.lastModifiedTime()));
+            startPendingArchives();
+            return new Event(EventType.ENTRY, entry, attrs);
+        }
+
+        // at maximum depth or file is not a directory
         if (depth >= directions.maxDepth() || !attrs.isDirectory()) {
             return new Event(EventType.ENTRY, entry, attrs);
         }
@@ -256,11 +827,24 @@ class FileTreeTraveller implements Closeable {
                     new FileSystemLoopException(entry.toString()));
         }
 
-        // file is a directory, attempt to open it
+        // file is a directory, reuse its cached listing if it is unchanged
+        DirectoryListingCache cache = directions.listingCache();
+        boolean record = false;
+        if (cache != null && attrs.fileKey() != null) {
+            DirectoryListingCache.Listing listing = cache.lookup(attrs.fileKey(), attrs.lastModifiedTime());
+            if (listing != null) {
+                push(new DirectoryNode(entry, attrs.fileKey(), listing,
+                        directions.attributesSignature(), directions.pathFilter()));
+                return new Event(EventType.START_DIRECTORY, entry, attrs);
+            }
+            record = attrs.lastModifiedTime().toMillis()
+                    < System.currentTimeMillis() - DirectoryListingCache.RACY_WINDOW_MILLIS;
+        }
+
+        // attempt to open it
         DirectoryStream<Path> stream = null;
         try {
-            stream = directions.pathFilter() != null ? Files.newDirectoryStream(entry, directions.pathFilter())
-                                        : Files.newDirectoryStream(entry);
+            stream = openDirectory(entry);
         } catch (IOException ioe) {
             return new Event(EventType.ENTRY, entry, ioe);
         } catch (SecurityException se) {
@@ -269,11 +853,197 @@ class FileTreeTraveller implements Closeable {
             throw se;
         }
 
-        // push a directory node to the stack and return an event
-        stack.push(new DirectoryNode(entry, attrs.fileKey(), stream));
+        // push a directory node to the stack and return an event; a directory inside an
+        // archive is resumed along with the archive, see FrontierEntry
+        DirectoryNode parent = stack.peek();
+        DirectoryNode node = (parent != null && parent.archiveFile() != null)
+                ? new DirectoryNode(entry, attrs.fileKey(), parent.lastModified(), stream,
+                        directions.pathFilter(), parent.archiveFile(), null)
+                : new DirectoryNode(entry, attrs.fileKey(), attrs.lastModifiedTime(), stream,
+                        directions.pathFilter());
+        if (record)
+            node.record();
+        push(node);
         return new Event(EventType.START_DIRECTORY, entry, attrs);
     }
 
+    /**
+     * Opens a directory stream, keeping the number of open handles below the limit of the
+     * directions. If the limit is reached, or the process runs out of file descriptors, a
+     * handle is released to make room, see {@link #releaseHandle}.
+     */
+    private DirectoryStream<Path> openDirectory(Path dir) throws IOException {
+        while (handlesInUse() >= directions.maxOpenDirectories() && releaseHandle()) { }
+        while (true) {
+            try {
+                return Files.newDirectoryStream(dir);
+            } catch (FileSystemException fse) {
+                if (!isOutOfHandles(fse) || !releaseHandle())
+                    throw fse;
+            }
+        }
+    }
+
+    /**
+     * Returns the file system of an archive to descend into, waiting for it if it is being
+     * opened and opening it otherwise, within the limit of open handles like a directory.
+     * Returns {@code null} if the traversal runs out of time while waiting; the archive is
+     * then left unstarted.
+     */
+    private FileSystem openPendingArchive(PendingArchive pending) throws IOException {
+        if (pending.started()) {
+            archivesOpening--;
+            while (true) {
+                long wait = ARCHIVE_POLL_NANOS;
+                if (directions.timeLimitNanos() != Long.MAX_VALUE && progressed)
+                    wait = Math.max(0, Math.min(wait, deadline - System.nanoTime()));
+                FileSystem fs = pending.fileSystem(wait);
+                if (fs != null)
+                    return fs;
+                if (outOfTime()) {
+                    pending.discard();
+                    return null;
+                }
+            }
+        }
+        while (handlesInUse() >= directions.maxOpenDirectories() && releaseHandle()) { }
+        while (true) {
+            try {
+                return openArchive(pending.file());
+            } catch (FileSystemException fse) {
+                if (!isOutOfHandles(fse) || !releaseHandle())
+                    throw fse;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of handles held by the traversal: open directories, the archive
+     * being travelled and the archives being opened ahead.
+     */
+    private int handlesInUse() {
+        return openNodes.size() + openArchives + archivesOpening;
+    }
+
+    /**
+     * Releases a handle by draining the least recently opened directory or, if there is
+     * none, by giving back the archive opened ahead that is descended into last. Returns
+     * {@code false} if there is no handle to release.
+     */
+    private boolean releaseHandle() {
+        DirectoryNode oldest = openNodes.pollLast();
+        if (oldest != null) {
+            oldest.drain();
+            return true;
+        }
+        for (Iterator<DirectoryNode> i = stack.descendingIterator(); i.hasNext(); ) {
+            PendingArchive pending = i.next().lastStartedArchive();
+            if (pending != null) {
+                discard(pending);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts opening the archives that are descended into next in the background, as long
+     * as fewer than {@link #ARCHIVES_OPENED_AHEAD} are being opened and the limit of open
+     * handles is not reached. The archives of the deepest directory come first.
+     */
+    private void startPendingArchives() {
+        for (DirectoryNode node : stack) {
+            while (archivesOpening < ARCHIVES_OPENED_AHEAD
+                    && handlesInUse() < directions.maxOpenDirectories()) {
+                PendingArchive pending = node.firstUnstartedArchive();
+                if (pending == null)
+                    break;
+                pending.start(directions.archiveExecutor());
+                archivesOpening++;
+            }
+        }
+    }
+
+    /**
+     * Discards an archive that is not descended into (now).
+     */
+    private void discard(PendingArchive pending) {
+        if (pending.started())
+            archivesOpening--;
+        pending.discard();
+    }
+
+    private static boolean isOutOfHandles(FileSystemException fse) {
+        String reason = fse.getReason();
+        return reason != null && reason.contains("Too many open files");
+    }
+
+    /**
+     * Pushes a node to the stack, tracking whether it holds a handle.
+     */
+    private void push(DirectoryNode node) {
+        stack.push(node);
+        if (node.holdsHandle())
+            openNodes.push(node);
+        if (node.holdsArchive())
+            openArchives++;
+    }
+
+    /**
+     * Closes a node taken from the stack, along with the archives of its directory that
+     * have not been descended into.
+     */
+    private void release(DirectoryNode node) throws IOException {
+        openNodes.remove(node);
+        if (node.holdsArchive())
+            openArchives--;
+        for (PendingArchive pending = node.nextPendingArchive(); pending != null;
+             pending = node.nextPendingArchive()) {
+            discard(pending);
+        }
+        node.close();
+    }
+
+
+    /**
+     * Opens the file system of the given archive, which reads its central directory.
+     */
+    private static FileSystem openArchive(Path archive) throws IOException {
+        try {
+            return FileSystems.newFileSystem(archive, (ClassLoader) null);
+        } catch (ProviderNotFoundException | ZipError e) {
+            throw new IOException("Not a readable archive: " + archive, e);
+        }
+    }
+
+    /**
+     * Creates the node for the root directory of the given archive's file system, which
+     * is closed along with the node.
+     */
+    private DirectoryNode archiveNode(Path archive, FileTime lastModified, FileSystem fs) throws IOException {
+        return archiveNode(archive, fs.getRootDirectories().iterator().next(), lastModified, fs);
+    }
+
+    /**
+     * Creates the node for a directory of the given archive's file system, which is closed
+     * along with the node. The node of the root directory stands for the archive file.
+     */
+    private DirectoryNode archiveNode(Path archive, Path dir, FileTime lastModified, FileSystem fs)
+            throws IOException
+    {
+        try {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+            Path node = (dir.getParent() == null) ? archive : dir;
+            return new DirectoryNode(node, null, lastModified, stream, directions.pathFilter(), archive, fs);
+        } catch (IOException | RuntimeException e) {
+            try {
+                fs.close();
+            } catch (IOException x) {
+                e.addSuppressed(x);
+            }
+            throw e;
+        }
+    }
 
     /**
      * Start walking from the given file.
@@ -282,13 +1052,81 @@ class FileTreeTraveller implements Closeable {
         if (closed)
             throw new IllegalStateException("Closed");
 
-        Event ev = visit(file,
-                false,   // ignoreSecurityException
-                false);  // canUseCached
+        if (directions.timeLimitNanos() != Long.MAX_VALUE)
+            deadline = System.nanoTime() + directions.timeLimitNanos();
+        Event ev = null;
+        if (directions.resumeDrained() != null)
+            ev = visitDrained(file);
+        else if (directions.resumeEntryInArchive() != null)
+            ev = visitInArchive(file, directions.resumeEntryInArchive());
+        if (ev == null) {
+            ev = visit(file,
+                    false,   // ignoreSecurityException
+                    false,   // canUseCached
+                    null);   // listed
+        }
         assert ev != null;
+
+        // a resumed directory or archive skips the entries delivered before, unless it has
+        // changed since, and is not delivered itself; a directory is drained right away, so
+        // it is not read past those entries again if it is resumed once more
+        if (directions.resuming() && ev.type() == EventType.START_DIRECTORY) {
+            DirectoryNode node = stack.peek();
+            if (directions.resumeDrained() == null && directions.resumeSkip() > 0
+                    && node.lastModified().equals(directions.resumeModified())) {
+                node.skipEntries(directions.resumeSkip());
+                if (node.holdsHandle()) {
+                    openNodes.remove(node);
+                    node.drain();
+                }
+            }
+        } else {
+            progressed = true;
+        }
         return ev;
     }
 
+    /**
+     * Visits a directory to resume it with the entries drained by a traversal that ended early,
+     * without reading it. Returns {@code null} if the directory has been modified since, so it
+     * is to be visited like any other.
+     */
+    private Event visitDrained(Path dir) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = getAttributes(dir, false);
+        } catch (IOException ioe) {
+            return new Event(EventType.ENTRY, dir, ioe);
+        }
+        if (!attrs.isDirectory() || !attrs.lastModifiedTime().equals(directions.resumeModified()))
+            return null;
+        push(new DirectoryNode(dir, attrs.fileKey(), attrs.lastModifiedTime(),
+                directions.resumeDrained(), directions.resumeSkip(), directions.pathFilter()));
+        return new Event(EventType.START_DIRECTORY, dir, attrs);
+    }
+
+    /**
+     * Visits a directory inside the given archive, to resume it.
+     */
+    private Event visitInArchive(Path archive, String dir) {
+        BasicFileAttributes attrs;
+        FileSystem fs;
+        try {
+            attrs = getAttributes(archive, false);
+            fs = openArchive(archive);
+        } catch (IOException ioe) {
+            return new Event(EventType.ENTRY, archive, ioe);
+        }
+        Path entry = fs.getPath(dir);
+        try {
+            push(archiveNode(archive, entry, attrs.lastModifiedTime(), fs));
+            return new Event(EventType.START_DIRECTORY, entry, Files.readAttributes(entry, BasicFileAttributes.class));
+        } catch (IOException ioe) {
+            pop();
+            return new Event(EventType.ENTRY, entry, ioe);
+        }
+    }
+
     /**
      * Returns the next Event or {@code null} if there are no more events or
      * the walker is closed.
@@ -299,46 +1137,170 @@ class FileTreeTraveller implements Closeable {
             return null;      // stack is empty, we are done
 
         // continue iteration of the directory at the top of the stack
-        Event ev;
-        do {
+        while (true) {
+            if (outOfTime()) {
+                interrupt(null);
+                return null;
+            }
+
             Path entry = null;
             IOException ioe = null;
 
             // get next entry in the directory
             if (!top.skipped()) {
-                Iterator<Path> iterator = top.iterator();
                 try {
-                    if (iterator.hasNext()) {
-                        entry = iterator.next();
-                    }
+                    entry = top.nextEntry();
                 } catch (DirectoryIteratorException x) {
                     ioe = x.getCause();
                 }
             }
 
+            // no next entry, so descend into the archives found in the directory,
+            // which had the time spent on the other entries to open
+            if (entry == null && ioe == null && !top.skipped()) {
+                PendingArchive pending = top.nextPendingArchive();
+                if (pending != null) {
+                    // the directory's handle is of no use any more
+                    if (top.holdsHandle()) {
+                        openNodes.remove(top);
+                        top.drain();
+                    }
+                    FileSystem fs;
+                    try {
+                        fs = openPendingArchive(pending);
+                        if (fs != null)
+                            push(archiveNode(pending.file(), pending.lastModified(), fs));
+                    } catch (IOException x) {
+                        startPendingArchives();
+                        return new Event(EventType.END_DIRECTORY, pending.file(), x);
+                    }
+                    if (fs == null) {
+                        top.putBackPendingArchive(pending);
+                        interrupt(null);
+                        return null;
+                    }
+                    startPendingArchives();
+                    top = stack.peek();
+                    continue;
+                }
+            }
+
             // no next entry so close and pop directory, creating corresponding event
             if (entry == null) {
+                if (top.recording() && !top.skipped() && ioe == null) {
+                    directions.listingCache().store(top.key(), top.recordedListing(directions.attributesSignature()));
+                }
+                stack.pop();
                 try {
-                    top.stream().close();
+                    release(top);
                 } catch (IOException e) {
-                    if (ioe != null) {
+                    if (ioe == null) {
                         ioe = e;
                     } else {
                         ioe.addSuppressed(e);
                     }
                 }
-                stack.pop();
+                if (top.holdsArchive())
+                    startPendingArchives();
                 return new Event(EventType.END_DIRECTORY, top.directory(), ioe);
             }
 
             // visit the entry
-            ev = visit(entry,
+            Event ev = visit(entry,
                     true,   // ignoreSecurityException
-                    true);  // canUseCached
+                    true,   // canUseCached
+                    top.cachedAttributes());
+            if (ev != null) {
+                if (ev.attributes() != null)
+                    top.recordAttributes(ev.attributes());
+                progressed = true;
+                return ev;
+            }
+        }
+    }
 
-        } while (ev == null);
+    /**
+     * Returns {@code true} if the traversal was cancelled or the time limit has passed. The
+     * time limit only applies once the traversal has produced an entry to deliver, so that a
+     * resumed traversal, which reads past the entries delivered before in its time, makes
+     * progress however long that takes.
+     */
+    private boolean outOfTime() {
+        CancellationToken cancellation = directions.cancellation();
+        if (cancellation != null && cancellation.isCancelled())
+            return true;
+        return directions.timeLimitNanos() != Long.MAX_VALUE
+                && progressed
+                && System.nanoTime() - deadline >= 0;
+    }
 
-        return ev;
+    /**
+     * Ends the traversal early: records what has not been travelled yet as the frontier and
+     * pops all directories from the stack. A {@code lookahead} event, already taken from this
+     * walker but not delivered, counts as not travelled.
+     *
+     * Each directory on the stack is recorded once, with the number of its entries read so
+     * far, and without reading the rest of it; so are the directories of an archive, whose
+     * listings come in the same order every time the archive is opened. Archives waiting to
+     * be descended into are recorded to be resumed before their first entry.
+     */
+    void interrupt(Event lookahead) {
+        Path undelivered = null;
+        if (lookahead != null) {
+            if (lookahead.type() == EventType.START_DIRECTORY)
+                pop();
+            if (stack.isEmpty()) {
+                frontier.add(new FrontierEntry(lookahead.file(), 0));
+            } else {
+                undelivered = lookahead.file();
+            }
+        }
+        while (!stack.isEmpty()) {
+            DirectoryNode node = stack.peek();
+            int depth = stack.size() - 1;
+            if (!node.skipped()) {
+                List<Path> drained = node.drainedEntries();
+                if (!node.listed()) {
+                    int entriesRead = (drained != null) ? node.drainedPosition() : node.entriesRead();
+                    if (undelivered != null)
+                        entriesRead--;
+                    frontier.add(new FrontierEntry(node.directory(), node.archiveFile(), depth,
+                            entriesRead, node.lastModified(), drained));
+                }
+                for (PendingArchive pending = node.nextPendingArchive(); pending != null;
+                     pending = node.nextPendingArchive()) {
+                    discard(pending);
+                    // an undelivered archive is delivered again along with its directory
+                    if (!pending.file().equals(undelivered))
+                        frontier.add(new FrontierEntry(pending.file(), pending.file(), depth + 1,
+                                0, pending.lastModified(), null));
+                }
+            }
+            undelivered = null;
+            pop();
+        }
+        interrupted = !frontier.isEmpty();
+    }
+
+    /**
+     * Returns {@code true} if the traversal ended early, see {@link #interrupt}.
+     */
+    boolean interrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Returns {@code true} if there are directories left on the stack.
+     */
+    boolean hasPending() {
+        return !stack.isEmpty();
+    }
+
+    /**
+     * Returns what a traversal that ended early has left out.
+     */
+    List<FrontierEntry> frontier() {
+        return frontier;
     }
 
     /**
@@ -351,7 +1313,7 @@ class FileTreeTraveller implements Closeable {
         if (!stack.isEmpty()) {
             DirectoryNode node = stack.pop();
             try {
-                node.stream().close();
+                release(node);
             } catch (IOException ignore) { }
         }
     }
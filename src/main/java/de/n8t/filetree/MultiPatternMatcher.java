@@ -0,0 +1,153 @@
+package de.n8t.filetree;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds all occurrences of a fixed set of byte patterns in a single pass (Aho-Corasick).
+ *
+ * The automaton is compiled into a complete transition table with one row of 256 states per
+ * node of the pattern trie, so scanning costs one table lookup per input byte, regardless of
+ * the number of patterns. Scanning is resumable: the state returned for one chunk of input is
+ * passed in for the next chunk, so matches spanning chunk boundaries are found.
+ *
+ * Instances are immutable and can be shared by several threads.
+ */
+class MultiPatternMatcher {
+
+    /**
+     * Receives the matches found by {@link #scan}.
+     */
+    interface Listener {
+        /**
+         * Called for every match, with the index of the pattern and the offset of its first
+         * byte. Returns {@code false} to stop scanning.
+         */
+        boolean match(int pattern, long offset);
+    }
+
+    /**
+     * The state to start scanning with.
+     */
+    static final int INITIAL_STATE = 0;
+
+    /**
+     * The state returned by {@link #scan} if the listener stopped scanning.
+     */
+    static final int STOPPED = -1;
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[][] transitions;
+    private final int[][] outputs;
+    private final int[] lengths;
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @throws  IllegalArgumentException
+     *          if there are no patterns or a pattern is empty
+     */
+    MultiPatternMatcher(List<byte[]> patterns) {
+        if (patterns.isEmpty()) throw new IllegalArgumentException("no patterns");
+        lengths = new int[patterns.size()];
+
+        // build the trie, -1 marking missing edges
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> out = new ArrayList<>();
+        trie.add(newRow());
+        out.add(NO_OUTPUT);
+        for (int p = 0; p < patterns.size(); p++) {
+            byte[] pattern = patterns.get(p);
+            if (pattern.length == 0) throw new IllegalArgumentException("pattern " + p + " is empty");
+            lengths[p] = pattern.length;
+            int state = 0;
+            for (byte b : pattern) {
+                int c = b & 0xff;
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    out.add(NO_OUTPUT);
+                }
+                state = trie.get(state)[c];
+            }
+            out.set(state, append(out.get(state), p));
+        }
+
+        // complete the transitions breadth first, following the failure links
+        int[] fail = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for (int c = 0; c < 256; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                fail[root[c]] = 0;
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] row = trie.get(state);
+            int[] failRow = trie.get(fail[state]);
+            for (int c = 0; c < 256; c++) {
+                int target = row[c];
+                if (target < 0) {
+                    row[c] = failRow[c];
+                } else {
+                    fail[target] = failRow[c];
+                    out.set(target, concat(out.get(target), out.get(fail[target])));
+                    queue.add(target);
+                }
+            }
+        }
+
+        transitions = trie.toArray(new int[0][]);
+        outputs = out.toArray(new int[0][]);
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) return a;
+        if (a.length == 0) return b;
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Scans the bytes between the position and the limit of the buffer (without changing
+     * them), starting in the given state. {@code offset} is the offset of the buffer's position
+     * within the whole input.
+     *
+     * Returns the state to continue with on the next chunk of input, or {@link #STOPPED} if
+     * the listener stopped scanning.
+     */
+    int scan(ByteBuffer buffer, int state, long offset, Listener listener) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        for (int i = start; i < end; i++) {
+            state = transitions[state][buffer.get(i) & 0xff];
+            int[] matched = outputs[state];
+            for (int p : matched) {
+                if (!listener.match(p, offset + (i - start) - lengths[p] + 1))
+                    return STOPPED;
+            }
+        }
+        return state;
+    }
+}
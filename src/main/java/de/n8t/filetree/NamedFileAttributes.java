@@ -0,0 +1,103 @@
+package de.n8t.filetree;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code BasicFileAttributes} backed by the map of a named attribute read, like
+ * {@code Files.readAttributes(file, "unix:mode,ino,nlink")}. The read must include the basic
+ * attributes, see {@link #withBasic(String)}.
+ */
+class NamedFileAttributes implements BasicFileAttributes {
+
+    private static final String[] BASIC_NAMES = {
+            "lastModifiedTime", "lastAccessTime", "creationTime", "size",
+            "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey"
+    };
+
+    private final String view;
+    private final Map<String, Object> attributes;
+
+    NamedFileAttributes(String names, Map<String, Object> attributes) {
+        this.view = names.substring(0, names.indexOf(':'));
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Adds the names of the basic attributes to the given {@code view:name,...} attribute
+     * string, unless they are already included.
+     */
+    static String withBasic(String names) {
+        int colon = names.indexOf(':');
+        Set<String> requested = new LinkedHashSet<>(Arrays.asList(names.substring(colon + 1).split(",")));
+        if (requested.contains("*"))
+            return names;
+        requested.addAll(Arrays.asList(BASIC_NAMES));
+        return names.substring(0, colon + 1) + String.join(",", requested);
+    }
+
+    /**
+     * Returns the name of the view the attributes were read from, like {@code "unix"}.
+     */
+    String view() {
+        return view;
+    }
+
+    /**
+     * Returns all attributes that were read, keyed by their name without the view prefix.
+     */
+    Map<String, Object> asMap() {
+        return attributes;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return (FileTime) attributes.get("lastModifiedTime");
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return (FileTime) attributes.get("lastAccessTime");
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return (FileTime) attributes.get("creationTime");
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return Boolean.TRUE.equals(attributes.get("isRegularFile"));
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return Boolean.TRUE.equals(attributes.get("isDirectory"));
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return Boolean.TRUE.equals(attributes.get("isSymbolicLink"));
+    }
+
+    @Override
+    public boolean isOther() {
+        return Boolean.TRUE.equals(attributes.get("isOther"));
+    }
+
+    @Override
+    public long size() {
+        Object size = attributes.get("size");
+        return (size != null) ? (Long) size : 0L;
+    }
+
+    @Override
+    public Object fileKey() {
+        return attributes.get("fileKey");
+    }
+}
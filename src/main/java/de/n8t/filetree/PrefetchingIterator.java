@@ -0,0 +1,177 @@
+package de.n8t.filetree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@code Iterator} whose elements are produced ahead of time on a background thread.
+ *
+ * The producer may run at most {@code bufferSize} elements ahead of the consumer, so the
+ * consumer's demand drives the producer (backpressure). The end of the elements takes a slot
+ * of the buffer like an element, so it waits for the consumer as well. Closing the iterator
+ * cancels the producer, which then releases its resources on its own thread.
+ *
+ * <pre>{@code
+ *     try (PrefetchingIterator<Path> iterator = new PrefetchingIterator<>(64, sink -> {
+ *         while (...) {
+ *             if (!sink.offer(path)) return;    // consumer has gone away
+ *         }
+ *     })) {
+ *         while (iterator.hasNext()) {
+ *             Path path = iterator.next();
+ *         }
+ *     }
+ * }</pre>
+ */
+class PrefetchingIterator<T> implements Iterator<T>, Closeable {
+
+    /**
+     * Receives the elements of a {@link Producer}.
+     */
+    interface Sink<T> {
+        /**
+         * Hands an element to the consumer, blocking while the buffer is full.
+         * Returns {@code false} if the consumer has closed the iterator, in which case the
+         * producer should stop.
+         */
+        boolean offer(T element);
+
+        /**
+         * Returns {@code true} if the consumer has closed the iterator.
+         */
+        boolean cancelled();
+    }
+
+    /**
+     * Produces the elements of a {@link PrefetchingIterator} on its background thread.
+     */
+    interface Producer<T> {
+        void produce(Sink<T> sink) throws Exception;
+    }
+
+    private static final long OFFER_RETRY_MILLIS = 50;
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> buffer;
+    private final Thread thread;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private Object next;
+    private boolean finished;
+
+    /**
+     * Creates the iterator and starts the producer on a new daemon thread.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code bufferSize} is not positive
+     */
+    PrefetchingIterator(int bufferSize, Producer<T> producer) {
+        if (bufferSize < 1) throw new IllegalArgumentException("'bufferSize' is not positive");
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        Sink<T> sink = new Sink<T>() {
+            @Override
+            public boolean offer(T element) {
+                return put(element);
+            }
+
+            @Override
+            public boolean cancelled() {
+                return cancelled;
+            }
+        };
+        this.thread = new Thread(() -> {
+            try {
+                producer.produce(sink);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                put(END);
+            }
+        }, "filetree-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Puts the element into the buffer, periodically checking for cancellation so the
+     * producer never blocks forever on a consumer that has gone away.
+     */
+    private boolean put(Object element) {
+        try {
+            while (!cancelled) {
+                if (buffer.offer(element, OFFER_RETRY_MILLIS, TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void fetchNextIfNeeded() {
+        if (next != null || finished)
+            return;
+        Object element;
+        try {
+            element = buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next element", e);
+        }
+        if (element == END) {
+            finished = true;
+            Throwable t = failure;
+            if (t != null) rethrow(t);
+        } else {
+            next = element;
+        }
+    }
+
+    private static void rethrow(Throwable t) {
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error)            throw (Error) t;
+        if (t instanceof IOException)      throw new UncheckedIOException((IOException) t);
+        throw new IllegalStateException(t);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cancelled)
+            throw new IllegalStateException();
+        fetchNextIfNeeded();
+        return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (cancelled)
+            throw new IllegalStateException();
+        fetchNextIfNeeded();
+        if (next == null)
+            throw new NoSuchElementException();
+        T result = (T) next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Cancels the producer and discards all prefetched elements. The producer finishes
+     * (and closes whatever it holds open) on its own thread shortly afterwards.
+     */
+    @Override
+    public void close() {
+        if (!cancelled) {
+            cancelled = true;
+            buffer.clear();
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package de.n8t.filetree;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A traversal that may end early, started by {@link FileTree#beginTravel(Directions)}.
+ *
+ * The traversal ends early when the time limit of its directions passes, when their
+ * cancellation token is cancelled, or when the travel is closed before its stream is used up
+ * (e.g. after a short-circuiting {@code findFirst}). Ending closes all directories it holds
+ * open and records where it stopped in each of them, so a later traversal can continue the work:
+ *
+ * <pre>{@code
+ *     try (Travel travel = FileTree.beginTravel(directions.timeLimit(200, TimeUnit.MILLISECONDS))) {
+ *         travel.stream().forEach(this::process);
+ *         travel.close();
+ *         if (!travel.complete())
+ *             later(travel.remainder());
+ *     }
+ * }</pre>
+ */
+public class Travel implements Closeable {
+
+    private final Directions directions;
+    private final FileTreeIterator iterator;
+    private final Stream<Path> stream;
+
+    Travel(Directions directions, FileTreeIterator iterator) {
+        this.directions = directions;
+        this.iterator = iterator;
+        this.stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT), false)
+                .onClose(this::close)
+                .map(entry -> entry.file());
+    }
+
+    /**
+     * Returns the stream of travelled files. Closing it closes this travel.
+     */
+    public Stream<Path> stream() {
+        return stream;
+    }
+
+    /**
+     * Returns {@code true} if every file has been delivered, {@code false} while the stream is
+     * not used up or if the traversal ended early.
+     */
+    public boolean complete() {
+        return iterator.complete();
+    }
+
+    /**
+     * Returns the files left out by a traversal that ended early, which is empty otherwise.
+     * A directory among them stands for its entries not delivered yet if it was partly
+     * travelled, and for the directory and everything below it otherwise. An archive stands
+     * for its entries not delivered yet, and so does a directory inside an archive, whose path
+     * belongs to the archive's file system, closed by now.
+     */
+    public List<Path> frontier() {
+        List<Path> result = new ArrayList<>();
+        for (FileTreeTraveller.FrontierEntry entry : iterator.walker().frontier()) {
+            result.add(entry.file());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns directions to travel each file of the {@link #frontier()} with, keeping the
+     * options, filters and the overall maximum depth of this travel. Together they deliver
+     * every entry this travel has left out, each of them once. A partly travelled directory
+     * or archive is resumed after the entries delivered already, unless it has been modified
+     * since, when all its entries are delivered again. A resumed directory is read to the end
+     * at once, and the entries not delivered yet are handed on to the remainder of that
+     * travel in memory, so it is read past the entries delivered already only once, in time
+     * that counts toward the time limit, see {@link Directions#timeLimit}.
+     *
+     * The cancellation token of this travel is left out, as it may have ended this travel;
+     * give the returned directions a new one with {@link Directions#cancelWith} if needed.
+     */
+    public List<Directions> remainder() {
+        List<Directions> result = new ArrayList<>();
+        for (FileTreeTraveller.FrontierEntry entry : iterator.walker().frontier()) {
+            Directions remainder = directions.relocate(entry.start(), directions.maxDepth() - entry.depth())
+                    .cancelWith(null);
+            if (entry.partial())
+                remainder.resume(entry.entriesRead(), entry.lastModified(), entry.entryInArchive(), entry.drained());
+            result.add(remainder);
+        }
+        return result;
+    }
+
+    /**
+     * Ends the traversal, closing all directories it holds open. If the stream has not been
+     * used up, the files not delivered yet make up the {@link #frontier()}.
+     */
+    @Override
+    public void close() {
+        iterator.stop();
+    }
+}
@@ -0,0 +1,88 @@
+package de.n8t.filetree;
+
+/**
+ * The result of {@link FileTree#estimate}: the estimated number of entries and the estimated
+ * total size of the regular files of a file tree, each with a 95% confidence interval.
+ *
+ * The entry count includes the starting file, like the stream of {@link FileTree#travelOn}.
+ * If the sampling happened to list every directory of the tree, the estimate is exact and both
+ * bounds equal the estimate.
+ */
+public class TreeEstimate {
+
+    private final double entries;
+    private final double entriesLow;
+    private final double entriesHigh;
+    private final double bytes;
+    private final double bytesLow;
+    private final double bytesHigh;
+    private final int probes;
+    private final int listings;
+    private final boolean exact;
+
+    TreeEstimate(double entries, double entriesLow, double entriesHigh,
+                 double bytes, double bytesLow, double bytesHigh,
+                 int probes, int listings, boolean exact) {
+        this.entries = entries;
+        this.entriesLow = entriesLow;
+        this.entriesHigh = entriesHigh;
+        this.bytes = bytes;
+        this.bytesLow = bytesLow;
+        this.bytesHigh = bytesHigh;
+        this.probes = probes;
+        this.listings = listings;
+        this.exact = exact;
+    }
+
+    public double entries() {
+        return entries;
+    }
+
+    public double entriesLow() {
+        return entriesLow;
+    }
+
+    public double entriesHigh() {
+        return entriesHigh;
+    }
+
+    public double bytes() {
+        return bytes;
+    }
+
+    public double bytesLow() {
+        return bytesLow;
+    }
+
+    public double bytesHigh() {
+        return bytesHigh;
+    }
+
+    /**
+     * Returns the number of random root-to-leaf paths the estimate is based on.
+     */
+    public int probes() {
+        return probes;
+    }
+
+    /**
+     * Returns the number of directories listed to compute the estimate.
+     */
+    public int listings() {
+        return listings;
+    }
+
+    /**
+     * Returns {@code true} if every directory of the tree was listed, so the estimate is exact.
+     */
+    public boolean exact() {
+        return exact;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreeEstimate[entries=%.0f (%.0f..%.0f), bytes=%.0f (%.0f..%.0f), probes=%d, listings=%d%s]",
+                entries, entriesLow, entriesHigh, bytes, bytesLow, bytesHigh, probes, listings,
+                exact ? ", exact" : "");
+    }
+}
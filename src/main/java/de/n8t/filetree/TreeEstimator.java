@@ -0,0 +1,234 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static de.n8t.filetree.FileTreeTraveller.EventType.END_DIRECTORY;
+import static de.n8t.filetree.FileTreeTraveller.EventType.ENTRY;
+import static de.n8t.filetree.FileTreeTraveller.EventType.START_DIRECTORY;
+
+/**
+ * Estimates the size of a file tree by sampling random paths from its root (Knuth's estimator).
+ *
+ * Each probe descends from the root into a uniformly chosen subdirectory until it reaches a
+ * directory without subdirectories (or the maximum depth). The entries of every directory on
+ * the path are weighted with the product of the fan-outs above it, which gives an unbiased
+ * estimate of the whole tree. The probes are averaged, and their spread yields the confidence
+ * interval.
+ *
+ * Directories are listed with a {@link FileTreeTraveller} for a single level, so filters and
+ * link options apply exactly like in a full traversal. Each directory is listed at most once
+ * per estimate, so the upper levels shared by most probes cost nothing after the first probe.
+ * The time limit and cancellation token of the directions do not apply, only the budget of
+ * the estimate. Archives are not descended into, even if the directions do: they count as the
+ * regular files they are.
+ */
+class TreeEstimator {
+
+    /**
+     * The quantile of the normal distribution for a 95% confidence interval.
+     */
+    private static final double Z_95 = 1.96;
+
+    /**
+     * What a single listed directory contributes to the estimate.
+     */
+    private static class Listing {
+        private final int entries;
+        private final long bytes;
+        private final List<Path> subdirs;
+        private final List<Object> subdirKeys;
+
+        Listing(int entries, long bytes, List<Path> subdirs, List<Object> subdirKeys) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.subdirs = subdirs;
+            this.subdirKeys = subdirKeys;
+        }
+    }
+
+    private final Directions directions;
+    private final long deadline;
+    private final int maxListings;
+    private final Random random = new Random();
+
+    private final Map<Path, Listing> listed = new HashMap<>();
+    private final Set<Path> unlisted = new HashSet<>();
+    private boolean truncated;
+    private long observedEntries = 1;
+    private long observedBytes;
+
+    TreeEstimator(Directions directions, long budgetNanos, int maxListings) {
+        if (budgetNanos < 0) throw new IllegalArgumentException("'timeBudget' is negative");
+        if (maxListings < 0) throw new IllegalArgumentException("'maxListings' is negative");
+        this.directions = directions.withoutTermination().withoutArchives();
+        this.deadline = System.nanoTime() + budgetNanos;
+        this.maxListings = maxListings;
+    }
+
+    private boolean budgetLeft() {
+        return listed.size() < maxListings && System.nanoTime() - deadline < 0;
+    }
+
+    /**
+     * Samples the tree until the budget is used up or every directory has been listed.
+     *
+     * @throws IOException
+     *          if an I/O errors occurs reading the starting file
+     */
+    TreeEstimate estimate() throws IOException {
+        Path start = directions.start();
+        BasicFileAttributes attrs;
+        try (FileTreeTraveller walker = new FileTreeTraveller(directions.relocate(start, 0))) {
+            FileTreeTraveller.Event ev = walker.walk(start);
+            if (ev.ioeException() != null)
+                throw ev.ioeException();
+            attrs = ev.attributes();
+        }
+        if (!attrs.isDirectory() || directions.maxDepth() == 0) {
+            long bytes = attrs.isRegularFile() ? attrs.size() : 0;
+            return new TreeEstimate(1, 1, 1, bytes, bytes, bytes, 0, 0, true);
+        }
+
+        unlisted.add(start);
+        int probes = 0;
+        double entriesSum = 0, entriesSquares = 0, bytesSum = 0, bytesSquares = 0;
+        while (!unlisted.isEmpty() && budgetLeft()) {
+            double[] sample = probe(start, attrs.fileKey());
+            if (sample == null)
+                break;    // budget ran out in the middle of the probe
+            probes++;
+            entriesSum += sample[0];
+            entriesSquares += sample[0] * sample[0];
+            bytesSum += sample[1];
+            bytesSquares += sample[1] * sample[1];
+        }
+
+        if (unlisted.isEmpty() && !truncated) {
+            return new TreeEstimate(observedEntries, observedEntries, observedEntries,
+                    observedBytes, observedBytes, observedBytes, probes, listed.size(), true);
+        }
+        if (probes == 0) {
+            return new TreeEstimate(observedEntries, observedEntries, Double.POSITIVE_INFINITY,
+                    observedBytes, observedBytes, Double.POSITIVE_INFINITY, 0, listed.size(), false);
+        }
+        double entries = entriesSum / probes;
+        double bytes = bytesSum / probes;
+        double entriesMargin = margin(entriesSum, entriesSquares, probes);
+        double bytesMargin = margin(bytesSum, bytesSquares, probes);
+        return new TreeEstimate(
+                Math.max(entries, observedEntries),
+                Math.max(entries - entriesMargin, observedEntries),
+                Math.max(entries + entriesMargin, observedEntries),
+                Math.max(bytes, observedBytes),
+                Math.max(bytes - bytesMargin, observedBytes),
+                Math.max(bytes + bytesMargin, observedBytes),
+                probes, listed.size(), false);
+    }
+
+    /**
+     * Returns the half width of the confidence interval of the mean, or infinity for a single probe.
+     */
+    private static double margin(double sum, double squares, int n) {
+        if (n < 2)
+            return Double.POSITIVE_INFINITY;
+        double mean = sum / n;
+        double variance = Math.max(0, (squares - n * mean * mean) / (n - 1));
+        return Z_95 * Math.sqrt(variance / n);
+    }
+
+    /**
+     * Walks one random path from the root and returns its estimate of the number of entries and
+     * the total size, or {@code null} if the budget ran out before the path was complete.
+     */
+    private double[] probe(Path root, Object rootKey) {
+        List<Object> pathKeys = new ArrayList<>();
+        pathKeys.add(rootKey);
+        double weight = 1;
+        double entries = 1;
+        double bytes = 0;
+        Path dir = root;
+        int depth = 0;
+        while (true) {
+            Listing listing = listed.get(dir);
+            if (listing == null) {
+                if (!budgetLeft())
+                    return null;
+                listing = list(dir, depth, pathKeys);
+            }
+            entries += weight * listing.entries;
+            bytes += weight * listing.bytes;
+
+            int fanOut = listing.subdirs.size();
+            if (fanOut == 0)
+                return new double[] { entries, bytes };
+            int choice = random.nextInt(fanOut);
+            weight *= fanOut;
+            dir = listing.subdirs.get(choice);
+            pathKeys.add(listing.subdirKeys.get(choice));
+            depth++;
+        }
+    }
+
+    /**
+     * Lists the given directory for a single level and remembers what it contributes. A
+     * listing that ends before the end of the directory makes the estimate inexact.
+     */
+    private Listing list(Path dir, int depth, List<Object> pathKeys) {
+        int entries = 0;
+        long bytes = 0;
+        List<Path> subdirs = new ArrayList<>();
+        List<Object> subdirKeys = new ArrayList<>();
+        boolean descend = depth + 1 < directions.maxDepth();
+        boolean complete = true;
+
+        try (FileTreeTraveller walker = new FileTreeTraveller(directions.relocate(dir, 1))) {
+            FileTreeTraveller.Event ev = walker.walk(dir);
+            if (ev.type() == START_DIRECTORY) {
+                for (ev = walker.next(); ev != null && ev.type() != END_DIRECTORY; ev = walker.next()) {
+                    if (ev.type() != ENTRY)
+                        continue;
+                    entries++;
+                    BasicFileAttributes attrs = ev.attributes();
+                    if (attrs == null)
+                        continue;    // unreadable entry, still counted
+                    if (attrs.isRegularFile())
+                        bytes += attrs.size();
+                    if (descend && attrs.isDirectory() && !wouldLoop(attrs.fileKey(), pathKeys)) {
+                        subdirs.add(ev.file());
+                        subdirKeys.add(attrs.fileKey());
+                    }
+                }
+                complete = ev != null && !walker.interrupted();
+            }
+        }
+
+        Listing listing = new Listing(entries, bytes, subdirs, subdirKeys);
+        listed.put(dir, listing);
+        unlisted.remove(dir);
+        truncated |= !complete;
+        for (Path subdir : subdirs) {
+            if (!listed.containsKey(subdir))
+                unlisted.add(subdir);
+        }
+        observedEntries += entries;
+        observedBytes += bytes;
+        return listing;
+    }
+
+    /**
+     * Returns true if descending into a directory with the given key would revisit a directory
+     * on the current path. Only relevant when following links.
+     */
+    private boolean wouldLoop(Object key, List<Object> pathKeys) {
+        return directions.followLinks() && key != null && pathKeys.contains(key);
+    }
+}
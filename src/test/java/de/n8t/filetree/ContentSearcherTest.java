@@ -0,0 +1,157 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for searching the content of file trees with FileTree.search.
+ */
+public class ContentSearcherTest
+    extends TestCase
+{
+    private Path root;
+
+    public ContentSearcherTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ContentSearcherTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("filetree");
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code size} bytes of filler text with the given pattern written at each offset.
+     */
+    private static byte[] content(int size, String pattern, int... offsets)
+    {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) '.');
+        byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+        for (int offset : offsets) {
+            System.arraycopy(bytes, 0, content, offset, bytes.length);
+        }
+        return content;
+    }
+
+    /**
+     * Searches the tree and returns the matches as {@code name@offset#pattern}.
+     */
+    private Set<String> search(Directions directions, ContentSearch search) throws IOException
+    {
+        try (Stream<ContentMatch> matches = FileTree.search(directions, search)) {
+            return matches.map(match -> match.file().getFileName() + "@" + match.offset() + "#" + match.pattern())
+                    .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    private static Set<String> set(String... matches)
+    {
+        return new HashSet<>(Arrays.asList(matches));
+    }
+
+    public void testMatchesAcrossBufferBoundaries() throws IOException
+    {
+        Files.write(root.resolve("file"), content(100, "needle", 13, 30, 45, 94));
+        ContentSearch search = new ContentSearch("needle", "dle.").bufferSize(16).mapThreshold(Long.MAX_VALUE);
+        assertEquals(set("file@13#0", "file@16#1", "file@30#0", "file@33#1", "file@45#0", "file@48#1", "file@94#0"),
+                search(new Directions(root), search));
+    }
+
+    public void testMappedAndBufferedScansAgree() throws IOException
+    {
+        for (int i = 0; i < 5; i++) {
+            Files.write(root.resolve("file" + i), content(1000 + 300 * i, "needle", 0, 255, 510 + i, 994));
+        }
+        Set<String> buffered = search(new Directions(root), new ContentSearch("needle").bufferSize(256).mapThreshold(Long.MAX_VALUE));
+        Set<String> mapped = search(new Directions(root), new ContentSearch("needle").mapThreshold(0));
+        assertEquals(20, buffered.size());
+        assertEquals(buffered, mapped);
+    }
+
+    public void testBinaryFilesAreSkipped() throws IOException
+    {
+        byte[] content = content(50, "needle", 20);
+        content[3] = 0;
+        Files.write(root.resolve("binary"), content);
+        Files.write(root.resolve("text"), content(50, "needle", 40));
+        for (long mapThreshold : new long[] { 0, Long.MAX_VALUE }) {
+            ContentSearch search = new ContentSearch("needle").mapThreshold(mapThreshold);
+            assertEquals(set("text@40#0"), search(new Directions(root), search));
+            assertEquals(set("binary@20#0", "text@40#0"), search(new Directions(root), search.skipBinaryFiles(false)));
+        }
+    }
+
+    public void testLargerFilesThanMaxFileSizeAreSkipped() throws IOException
+    {
+        Files.write(root.resolve("small"), content(100, "needle", 10));
+        Files.write(root.resolve("large"), content(101, "needle", 10));
+        assertEquals(set("small@10#0"), search(new Directions(root), new ContentSearch("needle").maxFileSize(100)));
+        assertEquals(set("small@10#0", "large@10#0"), search(new Directions(root), new ContentSearch("needle")));
+    }
+
+    public void testEntriesOfArchivesAreSearched() throws IOException
+    {
+        Files.write(root.resolve("file"), content(100, "needle", 7));
+        for (String archive : new String[] { "a.zip", "b.jar" }) {
+            try (OutputStream out = Files.newOutputStream(root.resolve(archive));
+                 ZipOutputStream zip = new ZipOutputStream(out)) {
+                for (String name : new String[] { "dir/first", "second" }) {
+                    zip.putNextEntry(new ZipEntry(name));
+                    zip.write(content(5000, "needle", 4000, 4094));
+                    zip.closeEntry();
+                }
+            }
+        }
+        for (long mapThreshold : new long[] { 0, Long.MAX_VALUE }) {
+            ContentSearch search = new ContentSearch("needle").mapThreshold(mapThreshold).bufferSize(4096);
+            List<ContentMatch> matches;
+            try (Stream<ContentMatch> stream = FileTree.search(new Directions(root).descendIntoArchives(), search)) {
+                matches = stream.collect(Collectors.toList());
+            }
+            assertEquals(1 + 2 * 2 * 2, matches.size());
+            long inArchives = matches.stream()
+                    .filter(match -> match.file().getFileSystem() != FileSystems.getDefault())
+                    .filter(match -> match.offset() == 4000 || match.offset() == 4094)
+                    .count();
+            assertEquals(8, inArchives);
+        }
+        // without descending into them, the archives are searched as compressed files
+        assertEquals(set("file@7#0"), search(new Directions(root), new ContentSearch("needle")));
+    }
+}
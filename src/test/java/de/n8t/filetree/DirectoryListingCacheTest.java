@@ -0,0 +1,126 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for sharing a DirectoryListingCache between traversals.
+ */
+public class DirectoryListingCacheTest
+    extends TestCase
+{
+    private Path root;
+
+    public DirectoryListingCacheTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( DirectoryListingCacheTest.class );
+    }
+
+    /**
+     * Creates two directories with a file and a subdirectory each, all last modified an hour
+     * ago, so their listings are cached.
+     */
+    @Override
+    protected void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("filetree");
+        for (String name : new String[] { "a", "b" }) {
+            Path dir = Files.createDirectories(root.resolve(name).resolve("sub"));
+            Files.write(dir.resolve("file"), new byte[3]);
+            Files.write(dir.getParent().resolve("file"), new byte[5]);
+        }
+        FileTime anHourAgo = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path dir : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                Files.setLastModifiedTime(dir, anHourAgo);
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Set<Path> travel(Directions directions) throws IOException
+    {
+        try (Stream<Path> paths = FileTree.travelOn(directions)) {
+            return paths.collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    public void testHitsAreFilteredByTheTraversalsOwnFilter() throws IOException
+    {
+        DirectoryListingCache cache = new DirectoryListingCache(1000);
+        Set<Path> all = travel(new Directions(root).useListingCache(cache));
+        assertEquals(9, all.size());
+        assertEquals(0, cache.hits());
+        assertEquals(5, cache.directories());
+
+        Directions blocked = new Directions(root).blockPaths(root.resolve("a").toString());
+        Set<Path> expected = travel(new Directions(root).blockPaths(root.resolve("a").toString()));
+        assertEquals(5, expected.size());
+        assertEquals(expected, travel(blocked.useListingCache(cache)));
+        assertTrue(cache.hits() > 0);
+
+        long hits = cache.hits();
+        Set<Path> directoriesOnly = travel(new Directions(root, TraversalOption.ONLY_DIRS).useListingCache(cache));
+        assertEquals(travel(new Directions(root, TraversalOption.ONLY_DIRS)), directoriesOnly);
+        assertEquals(5, directoriesOnly.size());
+        assertTrue(cache.hits() > hits);
+
+        // the cache still holds the complete listings
+        assertEquals(all, travel(new Directions(root).useListingCache(cache)));
+    }
+
+    public void testHitsWithOtherAttributes() throws IOException
+    {
+        if (!root.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            return;
+        DirectoryListingCache cache = new DirectoryListingCache(1000);
+        travel(new Directions(root).useListingCache(cache));
+
+        long hits = cache.hits();
+        try (Stream<FileTreeEntry> entries = FileTree.travelWithAttributes(
+                new Directions(root).readAttributes(PosixFileAttributes.class).useListingCache(cache))) {
+            List<FileTreeEntry> list = entries.collect(Collectors.toList());
+            assertEquals(9, list.size());
+            for (FileTreeEntry entry : list) {
+                assertTrue(entry.path().toString(), entry.attributes() instanceof PosixFileAttributes);
+            }
+        }
+        assertTrue(cache.hits() > hits);
+    }
+
+    public void testModifiedDirectoryIsListedAgain() throws IOException
+    {
+        DirectoryListingCache cache = new DirectoryListingCache(1000);
+        travel(new Directions(root).useListingCache(cache));
+        Path added = Files.write(root.resolve("a").resolve("added"), new byte[1]);
+        assertTrue(travel(new Directions(root).useListingCache(cache)).contains(added));
+    }
+}
@@ -0,0 +1,298 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for travelling file trees with FileTree.
+ */
+public class FileTreeTest
+    extends TestCase
+{
+    private Path root;
+
+    public FileTreeTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( FileTreeTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("filetree");
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Creates a tree that is both deep and wide: a chain of {@code depth} directories, each
+     * holding {@code width} files and a sibling directory with a file of its own.
+     */
+    private void createTree(int depth, int width) throws IOException
+    {
+        Path dir = root;
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < width; i++) {
+                Files.write(dir.resolve("file" + i), new byte[level + i]);
+            }
+            Path side = Files.createDirectory(dir.resolve("side"));
+            Files.write(side.resolve("leaf"), new byte[1]);
+            dir = Files.createDirectory(dir.resolve("level" + level));
+        }
+    }
+
+    private void createArchive(Path file, String... names) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(file);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static Set<String> travel(Directions directions) throws IOException
+    {
+        try (Stream<Path> paths = FileTree.travelOn(directions)) {
+            return paths.map(path -> path.toUri().toString()).collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    /**
+     * Returns the number of file descriptors open in this process, or -1 if that is unknown.
+     */
+    private static long openFileDescriptors() throws IOException
+    {
+        Path fds = Paths.get("/proc/self/fd");
+        if (!Files.isDirectory(fds))
+            return -1;
+        try (Stream<Path> paths = Files.list(fds)) {
+            return paths.count();
+        }
+    }
+
+    public void testTravelAheadDeliversTheOrderOfTravelOn() throws IOException
+    {
+        createTree(6, 4);
+        List<Path> expected;
+        try (Stream<Path> paths = FileTree.travelOn(new Directions(root))) {
+            expected = paths.collect(Collectors.toList());
+        }
+        for (int bufferSize : new int[] { 1, 3, 1000 }) {
+            try (Stream<Path> paths = FileTree.travelAhead(new Directions(root), bufferSize)) {
+                assertEquals("bufferSize " + bufferSize, expected, paths.collect(Collectors.toList()));
+            }
+        }
+    }
+
+    public void testTravelAheadClosesDirectoriesWhenClosedEarly() throws Exception
+    {
+        createTree(12, 2);
+        long before = openFileDescriptors();
+        if (before < 0)
+            return;
+        Stream<Path> paths = FileTree.travelAhead(new Directions(root), 1);
+        Iterator<Path> iterator = paths.iterator();
+        for (int i = 0; i < 20; i++) {
+            iterator.next();
+        }
+        assertTrue(openFileDescriptors() > before);
+        paths.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (openFileDescriptors() > before && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, openFileDescriptors());
+    }
+
+    public void testTravelAheadHandsFailuresToTheConsumer() throws IOException
+    {
+        Path dir = Files.createDirectory(root.resolve("dir"));
+        Files.createSymbolicLink(dir.resolve("loop"), dir);
+        try (Stream<Path> paths = FileTree.travelAhead(
+                new Directions(root, TraversalOption.FOLLOW_LINKS, TraversalOption.ON_EXCEPTION_FAIL), 1)) {
+            paths.count();
+            fail("the loop was not reported");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof FileSystemLoopException);
+        }
+    }
+
+    public void testMaxOpenDirectoriesTravelsEveryEntry() throws IOException
+    {
+        createTree(12, 5);
+        Set<String> uncapped = travel(new Directions(root));
+        assertEquals(1 + 12 * (5 + 3), uncapped.size());
+        for (int cap = 1; cap <= 4; cap++) {
+            assertEquals("cap " + cap, uncapped, travel(new Directions(root).maxOpenDirectories(cap)));
+        }
+    }
+
+    public void testMaxOpenDirectoriesWithArchives() throws IOException
+    {
+        createTree(3, 2);
+        for (int i = 0; i < 10; i++) {
+            createArchive(root.resolve("level0/archive" + i + ".zip"), "a/b.txt", "c.txt");
+        }
+        Set<String> uncapped = travel(new Directions(root).descendIntoArchives());
+        assertEquals(1 + 3 * (2 + 3) + 10 * 4, uncapped.size());
+        for (int cap = 1; cap <= 3; cap++) {
+            assertEquals("cap " + cap, uncapped, travel(new Directions(root).descendIntoArchives().maxOpenDirectories(cap)));
+        }
+    }
+
+    /**
+     * Travels the given directions, stopping after {@code limit} entries, and travels the
+     * remainder of every travel that did not complete the same way, collecting all entries.
+     */
+    private static void travelInParts(Directions directions, int limit, List<String> entries) throws IOException
+    {
+        List<Directions> remainder;
+        try (Travel travel = FileTree.beginTravel(directions)) {
+            Iterator<Path> paths = travel.stream().iterator();
+            for (int i = 0; i < limit && paths.hasNext(); i++) {
+                entries.add(paths.next().toUri().toString());
+            }
+            travel.close();
+            if (travel.complete()) {
+                assertTrue(travel.frontier().isEmpty());
+                return;
+            }
+            remainder = travel.remainder();
+        }
+        assertFalse(remainder.isEmpty());
+        for (Directions rest : remainder) {
+            travelInParts(rest, limit, entries);
+        }
+    }
+
+    public void testRemainderDeliversEveryEntryOnce() throws IOException
+    {
+        createTree(4, 3);
+        Set<String> all = travel(new Directions(root));
+        for (int limit = 1; limit <= all.size(); limit++) {
+            List<String> entries = new ArrayList<>();
+            travelInParts(new Directions(root), limit, entries);
+            assertEquals("limit " + limit, all.size(), entries.size());
+            assertEquals("limit " + limit, all, new TreeSet<>(entries));
+
+            // drained directories are resumed from their buffers
+            entries.clear();
+            travelInParts(new Directions(root).maxOpenDirectories(1), limit, entries);
+            assertEquals("limit " + limit, all.size(), entries.size());
+            assertEquals("limit " + limit, all, new TreeSet<>(entries));
+        }
+    }
+
+    public void testRemainderWithArchives() throws IOException
+    {
+        createTree(2, 2);
+        createArchive(root.resolve("archive.zip"), "a/b.txt", "a/c/d.txt", "a/e.txt", "f.txt", "g.txt");
+        createArchive(root.resolve("level0/archive.jar"), "h.txt");
+        createArchive(root.resolve("level0/other.zip"), "i/j.txt");
+        Set<String> all = travel(new Directions(root).descendIntoArchives());
+        assertEquals(1 + 2 * (2 + 3) + (1 + 7) + (1 + 1) + (1 + 2), all.size());
+        for (int limit = 1; limit <= all.size(); limit++) {
+            List<String> entries = new ArrayList<>();
+            travelInParts(new Directions(root).descendIntoArchives(), limit, entries);
+            assertEquals("limit " + limit, all.size(), entries.size());
+            assertEquals("limit " + limit, all, new TreeSet<>(entries));
+        }
+
+        // starting at an archive
+        Directions archive = new Directions(root.resolve("archive.zip")).descendIntoArchives();
+        Set<String> inArchive = travel(archive);
+        assertEquals(1 + 7, inArchive.size());
+        for (int limit = 1; limit <= inArchive.size(); limit++) {
+            List<String> entries = new ArrayList<>();
+            travelInParts(new Directions(root.resolve("archive.zip")).descendIntoArchives(), limit, entries);
+            assertEquals("limit " + limit, inArchive.size(), entries.size());
+            assertEquals("limit " + limit, inArchive, new TreeSet<>(entries));
+        }
+    }
+
+    public void testEveryPartDeliversAnEntryWithinNoTime() throws IOException
+    {
+        createTree(3, 3);
+        createArchive(root.resolve("level0/archive.zip"), "a/b.txt", "c.txt");
+        Set<String> all = travel(new Directions(root).descendIntoArchives());
+        List<String> entries = new ArrayList<>();
+        List<Directions> parts = new ArrayList<>();
+        parts.add(new Directions(root).descendIntoArchives().timeLimit(0, TimeUnit.NANOSECONDS));
+        for (int i = 0; i < parts.size(); i++) {
+            assertTrue("no progress", i < 10 * all.size());
+            try (Travel travel = FileTree.beginTravel(parts.get(i))) {
+                List<String> part = travel.stream().map(path -> path.toUri().toString()).collect(Collectors.toList());
+                assertTrue(part.size() <= 1);
+                entries.addAll(part);
+                parts.addAll(travel.remainder());
+            }
+        }
+        assertEquals(all.size(), entries.size());
+        assertEquals(all, new TreeSet<>(entries));
+    }
+
+    public void testCancelledTravelEndsWithFrontier() throws IOException
+    {
+        createTree(3, 4);
+        CancellationToken token = new CancellationToken();
+        List<String> entries = new ArrayList<>();
+        List<Directions> remainder;
+        try (Travel travel = FileTree.beginTravel(new Directions(root).cancelWith(token))) {
+            Iterator<Path> paths = travel.stream().iterator();
+            for (int i = 0; i < 5; i++) {
+                entries.add(paths.next().toUri().toString());
+            }
+            token.cancel();
+            while (paths.hasNext()) {
+                entries.add(paths.next().toUri().toString());
+            }
+            assertFalse(travel.complete());
+            remainder = travel.remainder();
+        }
+        for (Directions rest : remainder) {
+            assertNull(rest.cancellation());
+            try (Stream<Path> paths = FileTree.beginTravel(rest).stream()) {
+                paths.forEach(path -> entries.add(path.toUri().toString()));
+            }
+        }
+        assertEquals(travel(new Directions(root)), new TreeSet<>(entries));
+        assertEquals(1 + 3 * (4 + 3), entries.size());
+    }
+}
@@ -0,0 +1,106 @@
+package de.n8t.filetree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for MultiPatternMatcher.
+ */
+public class MultiPatternMatcherTest
+    extends TestCase
+{
+    public MultiPatternMatcherTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MultiPatternMatcherTest.class );
+    }
+
+    private static MultiPatternMatcher matcher(String... patterns)
+    {
+        List<byte[]> bytes = new ArrayList<>();
+        for (String pattern : patterns) {
+            bytes.add(pattern.getBytes(StandardCharsets.US_ASCII));
+        }
+        return new MultiPatternMatcher(bytes);
+    }
+
+    /**
+     * Scans the text in chunks of the given size, carrying the state from chunk to chunk, and
+     * returns the matches as "pattern@offset".
+     */
+    private static List<String> scan(MultiPatternMatcher matcher, String text, int chunkSize)
+    {
+        byte[] input = text.getBytes(StandardCharsets.US_ASCII);
+        List<String> matches = new ArrayList<>();
+        int state = MultiPatternMatcher.INITIAL_STATE;
+        for (int offset = 0; offset < input.length; offset += chunkSize) {
+            ByteBuffer chunk = ByteBuffer.wrap(input, offset, Math.min(chunkSize, input.length - offset));
+            state = matcher.scan(chunk, state, offset, (pattern, at) -> matches.add(pattern + "@" + at));
+        }
+        return matches;
+    }
+
+    public void testOverlappingPatterns()
+    {
+        MultiPatternMatcher matcher = matcher("he", "she", "his", "hers");
+        // "she" and "he" end at the same byte, "hers" starts inside "she"
+        assertEquals(Arrays.asList("1@1", "0@2", "3@2"), scan(matcher, "ushers", 64));
+    }
+
+    public void testPatternInsidePattern()
+    {
+        MultiPatternMatcher matcher = matcher("aa", "a");
+        assertEquals(Arrays.asList("1@0", "0@0", "1@1", "0@1", "1@2"), scan(matcher, "aaa", 64));
+    }
+
+    public void testMatchesSpanningChunkBoundaries()
+    {
+        MultiPatternMatcher matcher = matcher("SECRET", "RET", "TOKEN");
+        String text = "xxSECRETyyTOKENzzSECRET";
+        List<String> whole = scan(matcher, text, text.length());
+        assertEquals(Arrays.asList("0@2", "1@5", "2@10", "0@17", "1@20"), whole);
+        for (int chunkSize = 1; chunkSize < text.length(); chunkSize++) {
+            assertEquals("chunk size " + chunkSize, whole, scan(matcher, text, chunkSize));
+        }
+    }
+
+    public void testBytesAboveAscii()
+    {
+        List<byte[]> patterns = Arrays.asList(new byte[] { (byte) 0xff, 0 }, new byte[] { (byte) 0x80 });
+        MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+        ByteBuffer input = ByteBuffer.wrap(new byte[] { 1, (byte) 0xff, 0, (byte) 0x80 });
+        List<String> matches = new ArrayList<>();
+        matcher.scan(input, MultiPatternMatcher.INITIAL_STATE, 0, (pattern, at) -> matches.add(pattern + "@" + at));
+        assertEquals(Arrays.asList("0@1", "1@3"), matches);
+    }
+
+    public void testListenerStopsScanning()
+    {
+        MultiPatternMatcher matcher = matcher("a");
+        List<Long> offsets = new ArrayList<>();
+        int state = matcher.scan(ByteBuffer.wrap("aaaa".getBytes(StandardCharsets.US_ASCII)),
+                MultiPatternMatcher.INITIAL_STATE, 0, (pattern, at) -> offsets.add(at) && offsets.size() < 2);
+        assertEquals(MultiPatternMatcher.STOPPED, state);
+        assertEquals(Arrays.asList(0L, 1L), offsets);
+    }
+
+    public void testEmptyPatternRejected()
+    {
+        try {
+            matcher("a", "");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
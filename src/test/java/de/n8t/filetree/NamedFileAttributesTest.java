@@ -0,0 +1,113 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for reading named attributes with Directions.readAttributes(String).
+ */
+public class NamedFileAttributesTest
+    extends TestCase
+{
+    private Path root;
+
+    public NamedFileAttributesTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( NamedFileAttributesTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("filetree");
+        Files.write(Files.createDirectory(root.resolve("dir")).resolve("file"), new byte[7]);
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Set<String> names(String attributes)
+    {
+        return new HashSet<>(Arrays.asList(attributes.substring(attributes.indexOf(':') + 1).split(",")));
+    }
+
+    public void testWithBasicAddsTheBasicNames()
+    {
+        String names = NamedFileAttributes.withBasic("unix:ino,size");
+        assertTrue(names.startsWith("unix:ino,size,"));
+        assertEquals(new HashSet<>(Arrays.asList("ino", "size", "lastModifiedTime", "lastAccessTime",
+                "creationTime", "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey")), names(names));
+        assertEquals("posix:*", NamedFileAttributes.withBasic("posix:*"));
+    }
+
+    public void testUnixAttributesOfEveryEntry() throws IOException
+    {
+        if (!root.getFileSystem().supportedFileAttributeViews().contains("unix"))
+            return;
+        List<FileTreeEntry> entries;
+        try (Stream<FileTreeEntry> stream = FileTree.travelWithAttributes(new Directions(root).readAttributes("unix:ino"))) {
+            entries = stream.collect(Collectors.toList());
+        }
+        assertEquals(3, entries.size());
+        for (FileTreeEntry entry : entries) {
+            Object ino = Files.getAttribute(entry.path(), "unix:ino", LinkOption.NOFOLLOW_LINKS);
+            assertEquals(ino, entry.attribute("unix:ino"));
+            assertEquals(ino, entry.attribute("ino"));
+            assertNull(entry.attribute("posix:ino"));
+            assertNull(entry.attribute("nlink"));
+            assertEquals(Files.isDirectory(entry.path()), entry.attributes().isDirectory());
+            assertEquals(Files.size(entry.path()), entry.attributes().size());
+        }
+    }
+
+    public void testArchiveEntriesGetBasicAttributes() throws IOException
+    {
+        if (!root.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            return;
+        try (OutputStream out = Files.newOutputStream(root.resolve("archive.zip"));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("entry"));
+            zip.closeEntry();
+        }
+        Directions directions = new Directions(root).readAttributes(PosixFileAttributes.class).descendIntoArchives();
+        try (Stream<FileTreeEntry> stream = FileTree.travelWithAttributes(directions)) {
+            for (FileTreeEntry entry : stream.collect(Collectors.toList())) {
+                if (entry.path().getFileSystem() == root.getFileSystem()) {
+                    assertNotNull(entry.attributes(PosixFileAttributes.class));
+                } else {
+                    assertNotNull(entry.attributes());
+                    assertFalse(entry.attributes() instanceof PosixFileAttributes);
+                }
+            }
+        }
+    }
+}
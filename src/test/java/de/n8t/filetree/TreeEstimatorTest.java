@@ -0,0 +1,126 @@
+package de.n8t.filetree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for estimating file trees with FileTree.estimate.
+ */
+public class TreeEstimatorTest
+    extends TestCase
+{
+    private Path root;
+
+    public TreeEstimatorTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TreeEstimatorTest.class );
+    }
+
+    /**
+     * Creates 3 directories with 4 subdirectories each, every one of them holding 5 files of
+     * 10 bytes: 1 + 3 + 12 + 60 entries and 600 bytes.
+     */
+    @Override
+    protected void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("filetree");
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                Path dir = Files.createDirectories(root.resolve("dir" + i).resolve("sub" + j));
+                for (int k = 0; k < 5; k++) {
+                    Files.write(dir.resolve("file" + k), new byte[10]);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public void testExactOnSmallTree() throws IOException
+    {
+        TreeEstimate estimate = FileTree.estimate(new Directions(root), 10, TimeUnit.SECONDS);
+        assertTrue(estimate.exact());
+        assertEquals(76.0, estimate.entries());
+        assertEquals(76.0, estimate.entriesLow());
+        assertEquals(76.0, estimate.entriesHigh());
+        assertEquals(600.0, estimate.bytes());
+        assertEquals(16, estimate.listings());
+        try (Stream<Path> paths = FileTree.travelOn(new Directions(root))) {
+            assertEquals(paths.count(), (long) estimate.entries());
+        }
+    }
+
+    public void testExactWithMaxDepth() throws IOException
+    {
+        TreeEstimate estimate = FileTree.estimate(new Directions(root, 2), 10, TimeUnit.SECONDS);
+        assertTrue(estimate.exact());
+        assertEquals(16.0, estimate.entries());
+        assertEquals(0.0, estimate.bytes());
+    }
+
+    public void testTimeLimitOfDirectionsDoesNotApply() throws IOException
+    {
+        CancellationToken cancelled = new CancellationToken();
+        cancelled.cancel();
+        Directions directions = new Directions(root).timeLimit(0, TimeUnit.NANOSECONDS).cancelWith(cancelled);
+        TreeEstimate estimate = FileTree.estimate(directions, 10, TimeUnit.SECONDS);
+        assertTrue(estimate.exact());
+        assertEquals(76.0, estimate.entries());
+    }
+
+    public void testArchivesCountAsFiles() throws IOException
+    {
+        long bytes = 600;
+        for (String name : new String[] { "dir0/a.zip", "dir1/sub2/b.jar" }) {
+            try (OutputStream out = Files.newOutputStream(root.resolve(name));
+                 ZipOutputStream zip = new ZipOutputStream(out)) {
+                for (String entry : new String[] { "x/", "x/y", "z" }) {
+                    zip.putNextEntry(new ZipEntry(entry));
+                    zip.closeEntry();
+                }
+            }
+            bytes += Files.size(root.resolve(name));
+        }
+        TreeEstimate estimate = FileTree.estimate(new Directions(root).descendIntoArchives(), 10, TimeUnit.SECONDS);
+        assertTrue(estimate.exact());
+        assertEquals(78.0, estimate.entries());
+        assertEquals((double) bytes, estimate.bytes());
+        try (Stream<Path> paths = FileTree.travelOn(new Directions(root))) {
+            assertEquals(paths.count(), (long) estimate.entries());
+        }
+    }
+
+    public void testNotExactWhenBudgetRunsOut() throws IOException
+    {
+        TreeEstimate estimate = FileTree.estimate(new Directions(root), 10, TimeUnit.SECONDS, 2);
+        assertFalse(estimate.exact());
+        assertEquals(2, estimate.listings());
+        assertTrue(estimate.entriesLow() <= estimate.entries());
+        assertTrue(estimate.entries() <= estimate.entriesHigh());
+    }
+}